@@ -3,6 +3,7 @@ package net.thedanpage.game;
 import java.awt.Canvas;
 import java.awt.Dimension;
 import java.awt.Graphics;
+import java.awt.GraphicsEnvironment;
 import java.awt.Toolkit;
 import java.awt.event.WindowEvent;
 import java.awt.event.WindowFocusListener;
@@ -36,9 +37,11 @@ public class Game extends Canvas implements Runnable {
 	public static final int SCALE = 3;
 
 	/**
-	 * The width of the game window
+	 * The width of the game window. Without a display, such as when a tool draws
+	 * the game, it is as wide as it would be on a 1920 pixel wide monitor.
 	 */
-	public static final int WIDTH = (int) (Toolkit.getDefaultToolkit().getScreenSize().getWidth()/5);
+	public static final int WIDTH = GraphicsEnvironment.isHeadless() ? 1920 / 5
+			: (int) (Toolkit.getDefaultToolkit().getScreenSize().getWidth()/5);
 
 	/**
 	 * The height of the game window, calculated relative to the window's width
@@ -0,0 +1,86 @@
+package net.thedanpage.game.framework;
+
+/**
+ * A first-in, first-out queue of primitive <code>int</code>s, kept in a ring
+ * buffer that grows when it fills up. Unlike an
+ * <code>ArrayDeque&lt;Integer&gt;</code>, adding a value doesn't box it, so a
+ * queue that is reused doesn't allocate once it is big enough.
+ *
+ * @author Dan
+ *
+ */
+public class IntQueue {
+
+	private static final int MIN_CAPACITY = 16;
+
+	/** The values, from {@link #head} around to {@link #tail} */
+	private int[] values;
+
+	/** The slot of the next value to be removed */
+	private int head = 0;
+
+	/** The slot the next value will be added in */
+	private int tail = 0;
+
+	/** The number of values in the queue */
+	private int size = 0;
+
+	public IntQueue() {
+		this(MIN_CAPACITY);
+	}
+
+	/**
+	 * @param expectedSize the number of values the queue should be able to hold
+	 *                     without growing
+	 */
+	public IntQueue(int expectedSize) {
+		int capacity = MIN_CAPACITY;
+		while (capacity < expectedSize)
+			capacity *= 2;
+		values = new int[capacity];
+	}
+
+	/** Adds a value to the back of the queue */
+	public void add(int value) {
+		if (size == values.length)
+			resize(values.length * 2);
+		values[tail] = value;
+		tail = (tail + 1) & (values.length - 1);
+		size++;
+	}
+
+	/** Removes and returns the value at the front of the queue. The queue must not be empty. */
+	public int remove() {
+		if (size == 0)
+			throw new IllegalStateException("IntQueue is empty");
+		int value = values[head];
+		head = (head + 1) & (values.length - 1);
+		size--;
+		return value;
+	}
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	/** Removes every value, keeping the space they took up */
+	public void clear() {
+		head = 0;
+		tail = 0;
+		size = 0;
+	}
+
+	private void resize(int newCapacity) {
+		int[] newValues = new int[newCapacity];
+		for (int i = 0; i < size; i++)
+			newValues[i] = values[(head + i) & (values.length - 1)];
+		values = newValues;
+		head = 0;
+		tail = size;
+	}
+
+}
@@ -0,0 +1,170 @@
+package net.thedanpage.game.framework;
+
+import java.io.Serializable;
+
+/**
+ * A hash map with primitive <code>long</code> keys, using open addressing with
+ * linear probing. Unlike a <code>HashMap&lt;Long, V&gt;</code>, looking up a key
+ * doesn't box it, and entries don't need their own node objects.
+ *
+ * <br>
+ * <br>
+ *
+ * Entries can be iterated through by slot, from 0 to {@link #capacity()}, using
+ * {@link #valueAt(int)} and {@link #keyAt(int)}. Empty slots have a null value,
+ * so null values can't be stored.
+ *
+ * @author Dan
+ *
+ */
+public class LongHashMap<V> implements Serializable {
+
+	private static final long serialVersionUID = -3166813020434452519L;
+
+	private static final int MIN_CAPACITY = 16;
+
+	/** The keys of each slot */
+	private long[] keys;
+
+	/** The values of each slot, with null meaning the slot is empty */
+	private Object[] values;
+
+	/** The number of entries in the map */
+	private int size = 0;
+
+	public LongHashMap() {
+		this(MIN_CAPACITY);
+	}
+
+	/**
+	 * @param expectedSize the number of entries the map should be able to hold
+	 *                     without growing
+	 */
+	public LongHashMap(int expectedSize) {
+		int capacity = MIN_CAPACITY;
+		while (capacity * 3 / 4 < expectedSize)
+			capacity *= 2;
+		keys = new long[capacity];
+		values = new Object[capacity];
+	}
+
+	/** Spreads the bits of a key so that nearby keys don't cluster together */
+	private static int hash(long key) {
+		long h = key * 0x9E3779B97F4A7C15L;
+		return (int) (h ^ (h >>> 32));
+	}
+
+	/** Returns the slot holding a key, or the empty slot where it would go */
+	private int slotOf(long key) {
+		int mask = keys.length - 1;
+		int slot = hash(key) & mask;
+		while (values[slot] != null && keys[slot] != key)
+			slot = (slot + 1) & mask;
+		return slot;
+	}
+
+	/** Returns the value for a key, or null if there isn't one */
+	@SuppressWarnings("unchecked")
+	public V get(long key) {
+		return (V) values[slotOf(key)];
+	}
+
+	public boolean containsKey(long key) {
+		return values[slotOf(key)] != null;
+	}
+
+	/**
+	 * Sets the value for a key
+	 *
+	 * @return the previous value, or null if there wasn't one
+	 */
+	@SuppressWarnings("unchecked")
+	public V put(long key, V value) {
+		if (value == null)
+			throw new IllegalArgumentException("LongHashMap can't store null values");
+
+		int slot = slotOf(key);
+		V previous = (V) values[slot];
+		keys[slot] = key;
+		values[slot] = value;
+
+		if (previous == null && ++size > keys.length * 3 / 4)
+			resize(keys.length * 2);
+		return previous;
+	}
+
+	/**
+	 * Removes a key from the map
+	 *
+	 * @return the removed value, or null if there wasn't one
+	 */
+	@SuppressWarnings("unchecked")
+	public V remove(long key) {
+		int mask = keys.length - 1;
+		int slot = slotOf(key);
+		V removed = (V) values[slot];
+		if (removed == null)
+			return null;
+
+		// Shift the following entries back so that no probe sequence is broken
+		int empty = slot;
+		int next = (slot + 1) & mask;
+		while (values[next] != null) {
+			int home = hash(keys[next]) & mask;
+			// Only move the entry if its home slot isn't between the gap and itself
+			if (((next - home) & mask) >= ((next - empty) & mask)) {
+				keys[empty] = keys[next];
+				values[empty] = values[next];
+				empty = next;
+			}
+			next = (next + 1) & mask;
+		}
+		values[empty] = null;
+
+		size--;
+		return removed;
+	}
+
+	/** Removes every entry */
+	public void clear() {
+		for (int i = 0; i < values.length; i++)
+			values[i] = null;
+		size = 0;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	/** Returns the number of slots, for iterating with {@link #valueAt(int)} */
+	public int capacity() {
+		return keys.length;
+	}
+
+	/** Returns the key in a slot. Only meaningful if {@link #valueAt(int)} isn't null. */
+	public long keyAt(int slot) {
+		return keys[slot];
+	}
+
+	/** Returns the value in a slot, or null if the slot is empty */
+	@SuppressWarnings("unchecked")
+	public V valueAt(int slot) {
+		return (V) values[slot];
+	}
+
+	private void resize(int newCapacity) {
+		long[] oldKeys = keys;
+		Object[] oldValues = values;
+
+		keys = new long[newCapacity];
+		values = new Object[newCapacity];
+		for (int i = 0; i < oldKeys.length; i++) {
+			if (oldValues[i] != null) {
+				int slot = slotOf(oldKeys[i]);
+				keys[slot] = oldKeys[i];
+				values[slot] = oldValues[i];
+			}
+		}
+	}
+
+}
@@ -12,6 +12,8 @@ import java.util.List;
 
 import com.rits.cloning.Cloner;
 
+import net.thedanpage.game.world.map.block.Block;
+
 /**
  * A general utilities class
  * 
@@ -37,6 +39,9 @@ public class Util {
 	public static void init() {
 		// Round the decimals up for dfForString.
 		dfForString.setRoundingMode(RoundingMode.CEILING);
+
+		// Blocks are shared and compared by identity, so the originals are kept
+		cloner.dontCloneInstanceOf(Block.class);
 	}
 
 	public static int getMaxIntInArray(int[] inputArray) {
@@ -113,6 +118,35 @@ public class Util {
 		return dfForString.format(d);
 	}
 
+	/**
+	 * Appends a double to a StringBuilder the same way as
+	 * {@link #formatDoubleForString(double)}, with 4 decimals rounded up, but
+	 * without making any new objects, so it can be used every frame.
+	 * 
+	 * @param text the StringBuilder to append to
+	 * @param d    A double to be formatted
+	 */
+	public static void appendDoubleForString(StringBuilder text, double d) {
+		// Work out the number of ten-thousandths, rounded up. Multiplying isn't
+		// exact, so the result is nudged until it is the smallest one that is at
+		// least d, which is what DecimalFormat does with the decimal digits of d.
+		double scaled = Math.ceil(d * 10000);
+		while (scaled / 10000 < d)
+			scaled++;
+		while ((scaled - 1) / 10000 >= d)
+			scaled--;
+
+		long tenThousandths = Math.abs((long) scaled);
+		if (d < 0)
+			text.append('-');
+		// Numbers between -1 and 0 don't get a 0 before the point, like DecimalFormat
+		if (tenThousandths >= 10000 || d >= 0)
+			text.append(tenThousandths / 10000);
+		text.append('.');
+		for (long place = 1000; place > 0; place /= 10)
+			text.append((char) ('0' + tenThousandths / place % 10));
+	}
+
 	/**
 	 * Clones objects using kostaskougios'
 	 * <a href="https://github.com/kostaskougios/cloning">cloning library</a>
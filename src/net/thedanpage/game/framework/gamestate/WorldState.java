@@ -12,7 +12,6 @@ import net.thedanpage.game.graphics.Font;
 import net.thedanpage.game.graphics.Fonts;
 import net.thedanpage.game.graphics.Graphics;
 import net.thedanpage.game.world.map.Map;
-import net.thedanpage.game.world.map.block.Block;
 import net.thedanpage.game.world.map.block.BlockFactory;
 import net.thedanpage.game.world.map.block.Blocks;
 
@@ -77,11 +76,9 @@ public class WorldState extends BaseGameState {
 		// Place the selected block at the mouse position
 		else if (SwingUtilities.isRightMouseButton(e)) {
 			Point blockPos = map.getBlockCoordsAtScreenPos(GameEngine.getMousePos().x, GameEngine.getMousePos().y);
-			if (blockPos.x >= 0 && blockPos.x < Map.MAP_SIZE_CHUNKS * Block.BLOCK_SIZE && blockPos.y >= 0
-					&& blockPos.y < Map.MAP_HEIGHT) {
+			if (blockPos != null && map.isInBounds(blockPos.x) && blockPos.y >= 0 && blockPos.y < Map.MAP_HEIGHT) {
 				map.setBlock(
-						BlockFactory.createBlock(blockPos.x, blockPos.y,
-								Blocks.placeBlockList.get(map.currentPlaceBlockIndex)),
+						BlockFactory.getBlock(Blocks.placeBlockList.get(map.currentPlaceBlockIndex)),
 						map.getBlockCoordsAtScreenPos(GameEngine.getMousePos().x, GameEngine.getMousePos().y).x,
 						map.getBlockCoordsAtScreenPos(GameEngine.getMousePos().x, GameEngine.getMousePos().y).y);
 			}
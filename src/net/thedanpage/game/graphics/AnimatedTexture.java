@@ -33,6 +33,12 @@ public class AnimatedTexture extends Texture {
 	 */
 	protected int[] frameHeight;
 
+	/** Each frame as a {@link Sprite}, made when it is first drawn */
+	private transient Sprite[] sprites;
+
+	/** Each frame flipped horizontally as a {@link Sprite}, made when it is first drawn */
+	private transient Sprite[] flippedSprites;
+
 	/**
 	 * Creates an AnimatedTexture object from an array of strings.
 	 * 
@@ -108,6 +114,14 @@ public class AnimatedTexture extends Texture {
 	public int[] getPixels() {
 		return null;
 	}
+	@Override
+	public Sprite getSprite() {
+		return null;
+	}
+	@Override
+	public Sprite getFlippedSprite() {
+		return null;
+	}
 
 	/**
 	 * Returns the width of an animated texture for a specific frame.
@@ -145,6 +159,42 @@ public class AnimatedTexture extends Texture {
 		return null;
 	}
 
+	/**
+	 * Returns a specific frame as a {@link Sprite} for drawing, which shares its
+	 * pixels.
+	 * 
+	 * @param frame The frame to be accessed
+	 * @return The frame's sprite
+	 */
+	public Sprite getSprite(int frame) {
+		if (frame < 0 || frame >= this.frames.length)
+			return null;
+		if (this.sprites == null)
+			this.sprites = new Sprite[this.frames.length];
+		if (this.sprites[frame] == null)
+			this.sprites[frame] = new Sprite(frames[frame], frameWidth[frame], frameHeight[frame]);
+		return this.sprites[frame];
+	}
+
+	/**
+	 * Returns a specific frame flipped horizontally as a {@link Sprite} for
+	 * drawing, so that it doesn't have to be flipped every time it is drawn.
+	 * 
+	 * @param frame The frame to be accessed
+	 * @return The flipped frame's sprite
+	 */
+	public Sprite getFlippedSprite(int frame) {
+		if (frame < 0 || frame >= this.frames.length)
+			return null;
+		if (this.flippedSprites == null)
+			this.flippedSprites = new Sprite[this.frames.length];
+		if (this.flippedSprites[frame] == null)
+			this.flippedSprites[frame] = new Sprite(
+					Graphics.flipHorizontal(frameWidth[frame], frameHeight[frame], frames[frame]), frameWidth[frame],
+					frameHeight[frame]);
+		return this.flippedSprites[frame];
+	}
+
 	/**
 	 * Returns the number of frames for an animated texture.
 	 * 
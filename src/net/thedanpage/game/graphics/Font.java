@@ -1,7 +1,6 @@
 package net.thedanpage.game.graphics;
 
-import java.util.HashMap;
-import java.util.Map;
+import net.thedanpage.game.framework.LongHashMap;
 
 /**
  * A font object, used for drawing characters on the screen. Each font's texture
@@ -18,6 +17,17 @@ import java.util.Map;
 public class Font {
 	
 	static final String CHARS = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789.,;:?!-_'#\"\\/{}() ";
+
+	/**
+	 * Each character's index in {@link #CHARS}, by its char value, or -1 if it
+	 * can't be drawn. This replaces searching CHARS for every character drawn.
+	 */
+	private static final int[] GLYPH_INDEX = new int[128];
+
+	static {
+		for (int c = 0; c < GLYPH_INDEX.length; c++)
+			GLYPH_INDEX[c] = CHARS.indexOf(c);
+	}
 	
 	public static final int
 	ALIGN_LEFT = 0,
@@ -28,9 +38,17 @@ public class Font {
 	private int charWidth, charHeight;
 	
 	/**
-	 * Storage for character textures, referenced by their respective char
+	 * Storage for character textures, referenced by their index in {@link #CHARS}.
+	 * Characters that aren't in the font's image are null.
 	 */
-	private Map<Character, int[]> charTextures = new HashMap<Character, int[]>();
+	private int[][] charTextures = new int[CHARS.length()][];
+
+	/**
+	 * Character sprites already filled with a color, referenced by the color and
+	 * then the character's index in {@link #CHARS}. Each one is only made the first
+	 * time it is drawn.
+	 */
+	private LongHashMap<Sprite[]> tintedChars = new LongHashMap<Sprite[]>();
 
 	/**
 	 * A font used for drawing strings to the game.
@@ -83,7 +101,7 @@ public class Font {
 				}
 				
 				// Transfer charTexture to charTextures
-				charTextures.put(CHARS.charAt(charIndex), charTexture);
+				charTextures[charIndex] = charTexture;
 				
 				charIndex ++;
 
@@ -107,7 +125,38 @@ public class Font {
 	 * {@link Fonts#charDataToPixelArray} should be used in tandem.
 	 */
 	public int[] getCharTexture(char c) {
-		return this.charTextures.get(c);
+		int index = getGlyphIndex(c);
+		return index < 0 ? null : this.charTextures[index];
+	}
+
+	/** Returns whether a character can be drawn with the font */
+	public boolean canDraw(char c) {
+		return getCharTexture(c) != null;
+	}
+
+	/**
+	 * Returns a character filled with a color as a {@link Sprite}, for drawing
+	 * with {@link Graphics#drawSprite(int, int, Sprite)}. The sprite is kept, so
+	 * drawing the same character in the same color again doesn't make anything
+	 * new. The character must be one that {@link #canDraw(char)}.
+	 */
+	Sprite getCharSprite(char c, int color) {
+		Sprite[] sprites = this.tintedChars.get(color);
+		if (sprites == null) {
+			sprites = new Sprite[CHARS.length()];
+			this.tintedChars.put(color, sprites);
+		}
+
+		int index = getGlyphIndex(c);
+		if (sprites[index] == null)
+			sprites[index] = new Sprite(Fonts.charDataToPixelArray(this.charTextures[index], color), this.charWidth,
+					this.charHeight);
+		return sprites[index];
+	}
+
+	/** Returns a character's index in {@link #CHARS}, or -1 if it isn't there */
+	private static int getGlyphIndex(char c) {
+		return c < GLYPH_INDEX.length ? GLYPH_INDEX[c] : -1;
 	}
 
 }
@@ -60,7 +60,7 @@ public class Fonts {
 	 * @param color    an RGB integer to fill the character with
 	 * @return RGB pixel data
 	 */
-	private static int[] charDataToPixelArray(int[] charData, int color) {
+	static int[] charDataToPixelArray(int[] charData, int color) {
 		int[] newCharData = new int[charData.length];
 
 		// Literally just replaces all the 0's with -1's and 1's with the RGB color
@@ -74,16 +74,6 @@ public class Fonts {
 
 	}
 
-	/**
-	 * Draws a character on screen, for use only with the {@link #drawString}
-	 * function
-	 */
-	private static int[] getCharPixels(Font font, char c, int color) throws Exception {
-		if (!Font.CHARS.contains(new Character(c).toString()))
-			throw new Exception("The input string contained an invalid character: " + c);
-		return charDataToPixelArray(font.getCharTexture(c), color);
-	}
-
 	/**
 	 * Draws a string onto the screen using a specified font, and a specified color.
 	 * 
@@ -95,36 +85,36 @@ public class Fonts {
 	 * @param alignment the alignment of the text, determined by a Font.ALIGN...
 	 *                  constant
 	 */
-	public static void drawString(String string, String font, int x, int y, int color, int alignment) {
+	public static void drawString(CharSequence string, String font, int x, int y, int color, int alignment) {
 		try {
 			// Get the font based on the reference name
 			Font f = fonts.get(font);
 
-			Texture stringTex = new Texture((f.getCharWidth() + 1) * string.length() - 1, f.getCharHeight());
-
-			/*
-			 * Draw each character to the string texture, with one pixel of space in between
-			 * each one
-			 */
+			// Don't draw any of the string if one of its characters can't be drawn
 			for (int i = 0; i < string.length(); i++) {
-				stringTex.drawImageToTexture(
-						new Texture(getCharPixels(f, string.charAt(i), color), f.getCharWidth(), f.getCharHeight()),
-						i * (f.getCharWidth() + 1), 0);
+				if (!f.canDraw(string.charAt(i)))
+					throw new Exception("The input string contained an invalid character: " + string.charAt(i));
 			}
 
+			int width = (f.getCharWidth() + 1) * string.length() - 1;
 			switch (alignment) {
 			
 			case Font.ALIGN_LEFT:
 				break;
 			case Font.ALIGN_CENTER:
-				x -= stringTex.getWidth() / 2;
+				x -= width / 2;
 				break;
 			case Font.ALIGN_RIGHT:
-				x -= stringTex.getWidth();
+				x -= width;
 				
 			}
 
-			Graphics.drawImage(x, y, stringTex.getWidth(), stringTex.getHeight(), stringTex.getPixels());
+			/*
+			 * Draw each character straight to the screen from the font's sprites, with one
+			 * pixel of space in between each one
+			 */
+			for (int i = 0; i < string.length(); i++)
+				Graphics.drawSprite(x + i * (f.getCharWidth() + 1), y, f.getCharSprite(string.charAt(i), color));
 		} catch (Exception e) {
 			e.printStackTrace();
 		}
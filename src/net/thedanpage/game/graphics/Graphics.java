@@ -4,6 +4,7 @@ import java.awt.geom.Rectangle2D;
 
 import net.thedanpage.game.Game;
 import net.thedanpage.game.framework.Util;
+import net.thedanpage.game.world.map.LightEngine;
 import net.thedanpage.game.world.map.block.Block;
 
 /**
@@ -15,7 +16,24 @@ import net.thedanpage.game.world.map.block.Block;
 public class Graphics {
 
 	/**
-	 * Draws an image to the screen given an array of RGB pixel data.
+	 * How much each light level brightens a colour channel, out of 256, so that a
+	 * lit channel is <code>(channel * LIGHT_MULTIPLIERS[level]) >> 8</code>. Even
+	 * a light level of 0 isn't completely black.
+	 */
+	private static final int[] LIGHT_MULTIPLIERS = new int[LightEngine.MAX_LIGHT_LEVEL + 1];
+
+	static {
+		for (int level = 0; level <= LightEngine.MAX_LIGHT_LEVEL; level++)
+			LIGHT_MULTIPLIERS[level] = Math
+					.round(Util.mapFloat((float) level / LightEngine.MAX_LIGHT_LEVEL, 0, 1, 0.1f, 1) * 256);
+	}
+
+	/**
+	 * Draws an image to the screen given an array of RGB pixel data. The image is
+	 * clipped to the screen once, and then each run of pixels that aren't
+	 * transparent is copied a row at a time. Images that are drawn often should be
+	 * made into a {@link Sprite} and drawn with
+	 * {@link #drawSprite(int, int, Sprite)}, so their runs are only found once.
 	 * 
 	 * @param x         an x coordinate on the screen to draw the image at
 	 * @param y         a y coordinate on the screen to draw the image at
@@ -25,14 +43,25 @@ public class Graphics {
 	 */
 	public static void drawImage(int x, int y, int imgWidth, int imgHeight, int[] imgPixels) {
 		try {
+			Screen screen = Game.screen;
+			int width = screen.getWidth();
+			int minX = Math.max(0, -x);
+			int maxX = Math.min(imgWidth, width - x);
+			int minY = Math.max(0, -y);
+			int maxY = Math.min(imgHeight, screen.getHeight() - y);
 
-			for (int i = 0; i < imgWidth; i++) {
-				for (int j = 0; j < imgHeight; j++) {
-					if (x + i >= Game.screen.getWidth() || x + i < 0)
-						break;
-
-					if (imgPixels[i + j * imgWidth] != -1 && (y + j < Game.screen.getHeight() && y + j >= 0))
-						Game.screen.setPixel(x + i, y + j, imgPixels[i + j * imgWidth]);
+			for (int j = minY; j < maxY; j++) {
+				int imgRow = j * imgWidth;
+				int screenRow = (y + j) * width + x;
+				int i = minX;
+				while (i < maxX) {
+					while (i < maxX && imgPixels[imgRow + i] == -1)
+						i++;
+					int start = i;
+					while (i < maxX && imgPixels[imgRow + i] != -1)
+						i++;
+					if (start < i)
+						System.arraycopy(imgPixels, imgRow + start, screen.pixels, screenRow + start, i - start);
 				}
 			}
 
@@ -41,6 +70,75 @@ public class Graphics {
 		}
 	}
 
+	/**
+	 * Draws a {@link Sprite} to the screen, copying its runs of pixels that aren't
+	 * transparent a row at a time. A sprite that is completely on the screen
+	 * doesn't need clipping, so it is copied without checking each run against the
+	 * screen's edges.
+	 * 
+	 * @param x      an x coordinate on the screen to draw the sprite at
+	 * @param y      a y coordinate on the screen to draw the sprite at
+	 * @param sprite the sprite to draw
+	 */
+	public static void drawSprite(int x, int y, Sprite sprite) {
+		drawSprite(x, y, sprite, 0, Game.screen.getHeight());
+	}
+
+	/**
+	 * Draws a {@link Sprite} to the screen, like
+	 * {@link #drawSprite(int, int, Sprite)}, but only onto some of its rows. This
+	 * lets several threads draw to different bands of the screen at once.
+	 * 
+	 * @param top    the first row of the screen to draw on
+	 * @param bottom the row after the last one to draw on
+	 */
+	public static void drawSprite(int x, int y, Sprite sprite, int top, int bottom) {
+		Screen screen = Game.screen;
+		int width = screen.getWidth();
+		top = Math.max(top, 0);
+		bottom = Math.min(bottom, screen.getHeight());
+		int spriteWidth = sprite.getWidth();
+		int spriteHeight = sprite.getHeight();
+		int[] pixels = sprite.getPixels();
+		int[] spans = sprite.getSpans();
+		int[] rowSpans = sprite.getRowSpans();
+
+		if (x >= 0 && y >= top && x + spriteWidth <= width && y + spriteHeight <= bottom) {
+			int screenRow = y * width + x;
+			if (sprite.isOpaque()) {
+				for (int j = 0; j < spriteHeight; j++, screenRow += width)
+					System.arraycopy(pixels, j * spriteWidth, screen.pixels, screenRow, spriteWidth);
+			} else {
+				for (int j = 0; j < spriteHeight; j++, screenRow += width) {
+					int spriteRow = j * spriteWidth;
+					for (int i = rowSpans[j]; i < rowSpans[j + 1]; i += 2)
+						System.arraycopy(pixels, spriteRow + spans[i], screen.pixels, screenRow + spans[i],
+								spans[i + 1] - spans[i]);
+				}
+			}
+			return;
+		}
+
+		// The sprite is partly off the screen, so clip each run to its edges
+		int minX = Math.max(0, -x);
+		int maxX = Math.min(spriteWidth, width - x);
+		int minY = Math.max(0, top - y);
+		int maxY = Math.min(spriteHeight, bottom - y);
+		if (minX >= maxX)
+			return;
+
+		for (int j = minY; j < maxY; j++) {
+			int spriteRow = j * spriteWidth;
+			int screenRow = (y + j) * width + x;
+			for (int i = rowSpans[j]; i < rowSpans[j + 1]; i += 2) {
+				int start = Math.max(spans[i], minX);
+				int end = Math.min(spans[i + 1], maxX);
+				if (start < end)
+					System.arraycopy(pixels, spriteRow + start, screen.pixels, screenRow + start, end - start);
+			}
+		}
+	}
+
 	/**
 	 * Draws a {@link Texture} object directly to the screen.
 	 * 
@@ -49,7 +147,7 @@ public class Graphics {
 	 * @param texture a texture object
 	 */
 	public static void drawTexture(int x, int y, Texture texture) {
-		drawImage(x, y, texture.getWidth(), texture.getHeight(), texture.getPixels());
+		drawSprite(x, y, texture.getSprite());
 	}
 
 	/**
@@ -65,7 +163,7 @@ public class Graphics {
 			y -= texture.getHeight();
 		for (int px = x; px < Game.WIDTH; px += texture.getWidth()) {
 			for (int py = y; py < Game.HEIGHT; py += texture.getHeight()) {
-				drawImage(px, py, texture.getWidth(), texture.getHeight(), texture.getPixels());
+				drawSprite(px, py, texture.getSprite());
 			}
 		}
 	}
@@ -116,42 +214,52 @@ public class Graphics {
 	 *                       world
 	 */
 	public static void drawRectangle(Rectangle2D.Double rect, int color, boolean useBlockCoords) {
+		drawRectangle(rect.getX(), rect.getY(), rect.getWidth(), rect.getHeight(), color, useBlockCoords);
+	}
+
+	/**
+	 * Draws a rectangle to the screen, like
+	 * {@link #drawRectangle(Rectangle2D.Double, int, boolean)}, without needing a
+	 * rectangle object.
+	 */
+	public static void drawRectangle(double x, double y, double width, double height, int color,
+			boolean useBlockCoords) {
 		int rectX, rectY, rectW, rectH;
 
 		// Draw the rectangle based on block coordinates, using the screen offset, and
 		// scaling up to block coordinates
 		if (useBlockCoords) {
-			rectX = (int) (rect.getX() * Block.BLOCK_SIZE);
-			rectY = (int) (rect.getY() * Block.BLOCK_SIZE);
-			rectW = (int) (rect.getWidth() * Block.BLOCK_SIZE);
-			rectH = (int) (rect.getHeight() * Block.BLOCK_SIZE);
+			rectX = (int) (x * Block.BLOCK_SIZE);
+			rectY = (int) (y * Block.BLOCK_SIZE);
+			rectW = (int) (width * Block.BLOCK_SIZE);
+			rectH = (int) (height * Block.BLOCK_SIZE);
 
-			for (int x = rectX; x < rectX + rectW + 1; x++) {
-				Game.screen.setPixel(Game.screen.getScreenOffsetX() + x,
+			for (int px = rectX; px < rectX + rectW + 1; px++) {
+				Game.screen.setPixel(Game.screen.getScreenOffsetX() + px,
 						Game.screen.getScreenOffsetY() + Game.screen.getHeight() - (rectY + 1), color);
-				Game.screen.setPixel(Game.screen.getScreenOffsetX() + x,
+				Game.screen.setPixel(Game.screen.getScreenOffsetX() + px,
 						Game.screen.getScreenOffsetY() + Game.screen.getHeight() - (rectY + rectH + 1), color);
 			}
-			for (int y = rectY + 1; y < rectY + rectH; y++) {
+			for (int py = rectY + 1; py < rectY + rectH; py++) {
 				Game.screen.setPixel(Game.screen.getScreenOffsetX() + rectX,
-						Game.screen.getScreenOffsetY() + Game.screen.getHeight() - (y + 1), color);
+						Game.screen.getScreenOffsetY() + Game.screen.getHeight() - (py + 1), color);
 				Game.screen.setPixel(Game.screen.getScreenOffsetX() + (rectX + rectW),
-						Game.screen.getScreenOffsetY() + Game.screen.getHeight() - (y + 1), color);
+						Game.screen.getScreenOffsetY() + Game.screen.getHeight() - (py + 1), color);
 			}
 		} else {
 			// Draw the rectangle normally using screen coordinates
-			rectX = (int) rect.getX();
-			rectY = (int) rect.getY();
-			rectW = (int) rect.getWidth();
-			rectH = (int) rect.getHeight();
-
-			for (int x = rectX; x < rectX + rectW + 1; x++) {
-				Game.screen.setPixel(x, Game.screen.getHeight() - (rectY + 1), color);
-				Game.screen.setPixel(x, Game.screen.getHeight() - (rectY + rectH + 1), color);
+			rectX = (int) x;
+			rectY = (int) y;
+			rectW = (int) width;
+			rectH = (int) height;
+
+			for (int px = rectX; px < rectX + rectW + 1; px++) {
+				Game.screen.setPixel(px, Game.screen.getHeight() - (rectY + 1), color);
+				Game.screen.setPixel(px, Game.screen.getHeight() - (rectY + rectH + 1), color);
 			}
-			for (int y = rectY + 1; y < rectY + rectH; y++) {
-				Game.screen.setPixel(rectX, Game.screen.getHeight() - (y + 1), color);
-				Game.screen.setPixel(rectX + rectW, Game.screen.getHeight() - (y + 1), color);
+			for (int py = rectY + 1; py < rectY + rectH; py++) {
+				Game.screen.setPixel(rectX, Game.screen.getHeight() - (py + 1), color);
+				Game.screen.setPixel(rectX + rectW, Game.screen.getHeight() - (py + 1), color);
 			}
 		}
 	}
@@ -166,32 +274,42 @@ public class Graphics {
 	 *                       world
 	 */
 	public static void fillRectangle(Rectangle2D.Double rect, int color, boolean useBlockCoords) {
+		fillRectangle(rect.getX(), rect.getY(), rect.getWidth(), rect.getHeight(), color, useBlockCoords);
+	}
+
+	/**
+	 * Draws a filled rectangle to the screen, like
+	 * {@link #fillRectangle(Rectangle2D.Double, int, boolean)}, without needing a
+	 * rectangle object.
+	 */
+	public static void fillRectangle(double x, double y, double width, double height, int color,
+			boolean useBlockCoords) {
 		int rectX, rectY, rectW, rectH;
 
 		// Draw the rectangle based on block coordinates, using the screen offset, and
 		// scaling up to block coordinates
 		if (useBlockCoords) {
-			rectX = (int) (rect.getX() * Block.BLOCK_SIZE);
-			rectY = (int) (rect.getY() * Block.BLOCK_SIZE);
-			rectW = (int) (rect.getWidth() * Block.BLOCK_SIZE);
-			rectH = (int) (rect.getHeight() * Block.BLOCK_SIZE);
-
-			for (int x = rectX; x < rectX + rectW; x++) {
-				for (int y = rectY; y < rectY + rectH; y++) {
-					Game.screen.setPixel(Game.screen.getScreenOffsetX() + x,
-							Game.screen.getScreenOffsetY() + Game.screen.getHeight() - (y + 1), color);
+			rectX = (int) (x * Block.BLOCK_SIZE);
+			rectY = (int) (y * Block.BLOCK_SIZE);
+			rectW = (int) (width * Block.BLOCK_SIZE);
+			rectH = (int) (height * Block.BLOCK_SIZE);
+
+			for (int px = rectX; px < rectX + rectW; px++) {
+				for (int py = rectY; py < rectY + rectH; py++) {
+					Game.screen.setPixel(Game.screen.getScreenOffsetX() + px,
+							Game.screen.getScreenOffsetY() + Game.screen.getHeight() - (py + 1), color);
 				}
 			}
 		} else {
 			// Draw the rectangle normally using screen coordinates
-			rectX = (int) rect.getX();
-			rectY = (int) rect.getY();
-			rectW = (int) rect.getWidth();
-			rectH = (int) rect.getHeight();
-
-			for (int x = rectX; x < rectX + rectW; x++) {
-				for (int y = rectY; y < rectY + rectH; y++) {
-					Game.screen.setPixel(x, Game.screen.getHeight() - (y + 1), color);
+			rectX = (int) x;
+			rectY = (int) y;
+			rectW = (int) width;
+			rectH = (int) height;
+
+			for (int px = rectX; px < rectX + rectW; px++) {
+				for (int py = rectY; py < rectY + rectH; py++) {
+					Game.screen.setPixel(px, Game.screen.getHeight() - (py + 1), color);
 				}
 			}
 		}
@@ -207,20 +325,29 @@ public class Graphics {
 	 *                       world
 	 */
 	public static void highlightRectangleBlockCoords(Rectangle2D.Double rect) {
+		highlightRectangleBlockCoords(rect.getX(), rect.getY(), rect.getWidth(), rect.getHeight());
+	}
+
+	/**
+	 * Highlights a rectangle on the screen, like
+	 * {@link #highlightRectangleBlockCoords(Rectangle2D.Double)}, without needing a
+	 * rectangle object.
+	 */
+	public static void highlightRectangleBlockCoords(double x, double y, double width, double height) {
 		int rectX, rectY, rectW, rectH;
 
 		// Draw the rectangle based on block coordinates, using the screen offset, and
 		// scaling up to block coordinates
-		rectX = (int) (rect.getX() * Block.BLOCK_SIZE);
-		rectY = (int) (rect.getY() * Block.BLOCK_SIZE);
-		rectW = (int) (rect.getWidth() * Block.BLOCK_SIZE);
-		rectH = (int) (rect.getHeight() * Block.BLOCK_SIZE);
+		rectX = (int) (x * Block.BLOCK_SIZE);
+		rectY = (int) (y * Block.BLOCK_SIZE);
+		rectW = (int) (width * Block.BLOCK_SIZE);
+		rectH = (int) (height * Block.BLOCK_SIZE);
 
 		int r, g, b, rgbInt;
-		for (int x = rectX; x < rectX + rectW; x++) {
-			for (int y = rectY; y < rectY + rectH; y++) {
-				rgbInt = Game.screen.getPixel(Game.screen.getScreenOffsetX() + x,
-						Game.screen.getScreenOffsetY() + Game.screen.getHeight() - (y + 1));
+		for (int px = rectX; px < rectX + rectW; px++) {
+			for (int py = rectY; py < rectY + rectH; py++) {
+				rgbInt = Game.screen.getPixel(Game.screen.getScreenOffsetX() + px,
+						Game.screen.getScreenOffsetY() + Game.screen.getHeight() - (py + 1));
 				r = (rgbInt >> 16) & 255;
 				g = (rgbInt >> 8) & 255;
 				b = rgbInt & 255;
@@ -234,34 +361,47 @@ public class Graphics {
 				if (b > 255)
 					b = 255;
 
-				Game.screen.setPixel(Game.screen.getScreenOffsetX() + x,
-						Game.screen.getScreenOffsetY() + Game.screen.getHeight() - (y + 1), (r << 16) + (g << 8) + b);
+				Game.screen.setPixel(Game.screen.getScreenOffsetX() + px,
+						Game.screen.getScreenOffsetY() + Game.screen.getHeight() - (py + 1), (r << 16) + (g << 8) + b);
 			}
 		}
 	}
 
 	/**
-	 * Applies lighting to a texture based on a double, with 0 being completely
-	 * black and 1 being normal lightness.
+	 * Applies lighting to a texture based on a light level, from 0 being darkest
+	 * to {@link LightEngine#MAX_LIGHT_LEVEL} being normal lightness.
 	 */
-	public static int[] applyLighting(int[] pixels, float lightLevel) {
-		lightLevel = Util.mapFloat(lightLevel, 0, 1, 0.1f, 1);
-		if (lightLevel < 0 || lightLevel > 1)
-			throw new IllegalArgumentException(Float.toString(lightLevel));
+	public static int[] applyLighting(int[] pixels, int lightLevel) {
+		return applyLighting(pixels, lightLevel, new int[pixels.length]);
+	}
+
+	/**
+	 * Applies lighting to a texture based on a light level, like
+	 * {@link #applyLighting(int[], int)}, writing the lit pixels into an array
+	 * instead of making a new one
+	 *
+	 * @param out an array at least as long as the pixels
+	 * @return <code>out</code>
+	 */
+	public static int[] applyLighting(int[] pixels, int lightLevel, int[] out) {
+		if (lightLevel < 0 || lightLevel > LightEngine.MAX_LIGHT_LEVEL)
+			throw new IllegalArgumentException(Integer.toString(lightLevel));
+		int multiplier = LIGHT_MULTIPLIERS[lightLevel];
 
-		int[] newPix = (int[]) Util.deepClone(pixels);
 		int r, g, b;
 		for (int i = 0; i < pixels.length; i++) {
-			if (newPix[i] != -1) {
-				r = (int) (((newPix[i] >> 16) & 255) * lightLevel);
-				g = (int) (((newPix[i] >> 8) & 255) * lightLevel);
-				b = (int) ((newPix[i] & 255) * lightLevel);
+			if (pixels[i] != -1) {
+				r = (((pixels[i] >> 16) & 255) * multiplier) >> 8;
+				g = (((pixels[i] >> 8) & 255) * multiplier) >> 8;
+				b = ((pixels[i] & 255) * multiplier) >> 8;
 	
-				newPix[i] = (r << 16) + (g << 8) + b;
+				out[i] = (r << 16) + (g << 8) + b;
 			}
+			else
+				out[i] = -1;
 		}
 
-		return newPix;
+		return out;
 	}
 
 	/**
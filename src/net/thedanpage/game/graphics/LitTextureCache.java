@@ -0,0 +1,160 @@
+package net.thedanpage.game.graphics;
+
+import net.thedanpage.game.framework.LongHashMap;
+import net.thedanpage.game.world.map.LightEngine;
+
+/**
+ * Block textures that have already had lighting applied, so that drawing a
+ * block is just a lookup. Each one is kept by its texture index in
+ * {@link Textures#getBlockTexture(int)}, its animation frame and its light
+ * level, and is only lit the first time it is needed.
+ *
+ * <br>
+ * <br>
+ *
+ * Only {@link #DEFAULT_MAX_ENTRIES} lit textures are kept at once. When another
+ * one is needed, the one that was used longest ago is forgotten, and its pixel
+ * array is reused for the new one. Once every texture that is on the screen has
+ * been lit, looking them up doesn't allocate anything. It should only be used on
+ * the game thread.
+ *
+ * @author Dan
+ *
+ */
+public class LitTextureCache {
+
+	/**
+	 * The number of lit textures kept by default. That is enough for 32 textures
+	 * or animation frames at every light level, and each 8x8 texture takes 256
+	 * bytes, so this is about 128KB.
+	 */
+	public static final int DEFAULT_MAX_ENTRIES = 32 * (LightEngine.MAX_LIGHT_LEVEL + 1);
+
+	/** One lit texture, and when it was last used */
+	private static class Entry {
+
+		final Sprite sprite;
+
+		/** The value of {@link LitTextureCache#clock} when the texture was last used */
+		long lastUsed;
+
+		Entry(Sprite sprite) {
+			this.sprite = sprite;
+		}
+
+	}
+
+	private final int maxEntries;
+
+	/** The lit textures, by {@link #key(int, int, int)} */
+	private final LongHashMap<Entry> entries;
+
+	/** Counts up every time a texture is used, for finding the one used longest ago */
+	private long clock = 0;
+
+	/** The number of lookups that found a lit texture, and that had to light one */
+	private long hits = 0, misses = 0;
+
+	public LitTextureCache() {
+		this(DEFAULT_MAX_ENTRIES);
+	}
+
+	/**
+	 * @param maxEntries the number of lit textures to keep at once
+	 */
+	public LitTextureCache(int maxEntries) {
+		this.maxEntries = Math.max(1, maxEntries);
+		this.entries = new LongHashMap<Entry>(this.maxEntries + 1);
+	}
+
+	/**
+	 * Returns the pixels of a block texture with lighting applied. The array is
+	 * shared, so it must not be changed.
+	 *
+	 * @param textureIndex the texture's index in {@link Textures#getBlockTexture(int)}
+	 * @param frame        the animation frame, which is ignored if the texture
+	 *                     isn't animated
+	 * @param lightLevel   the light level, from 0 to
+	 *                     {@link LightEngine#MAX_LIGHT_LEVEL}
+	 */
+	public int[] getBlockTexture(int textureIndex, int frame, int lightLevel) {
+		return getBlockSprite(textureIndex, frame, lightLevel).getPixels();
+	}
+
+	/**
+	 * Returns a block texture with lighting applied, like
+	 * {@link #getBlockTexture(int, int, int)}, as a {@link Sprite} for drawing. The
+	 * sprite is shared, so it must not be changed.
+	 */
+	public Sprite getBlockSprite(int textureIndex, int frame, int lightLevel) {
+		Texture texture = Textures.getBlockTexture(textureIndex);
+		if (!(texture instanceof AnimatedTexture))
+			frame = 0;
+
+		long key = key(textureIndex, frame, lightLevel);
+		Entry entry = entries.get(key);
+		if (entry != null) {
+			hits++;
+			entry.lastUsed = ++clock;
+			return entry.sprite;
+		}
+
+		misses++;
+		Sprite unlit = texture instanceof AnimatedTexture ? ((AnimatedTexture) texture).getSprite(frame)
+				: texture.getSprite();
+		if (entries.size() >= maxEntries) {
+			// Reuse the forgotten texture if it is the right size
+			Entry evicted = evictLeastRecentlyUsed();
+			if (evicted.sprite.getWidth() == unlit.getWidth() && evicted.sprite.getHeight() == unlit.getHeight())
+				entry = evicted;
+		}
+		if (entry == null)
+			entry = new Entry(new Sprite(new int[unlit.getPixels().length], unlit.getWidth(), unlit.getHeight()));
+
+		// A reused sprite was lit from another texture, so its runs have to be found again
+		Graphics.applyLighting(unlit.getPixels(), lightLevel, entry.sprite.getPixels());
+		entry.sprite.updateSpans();
+		entry.lastUsed = ++clock;
+		entries.put(key, entry);
+		return entry.sprite;
+	}
+
+	/** Forgets every lit texture, such as when the textures are loaded again */
+	public void clear() {
+		entries.clear();
+	}
+
+	/** Returns the number of lit textures being kept */
+	public int size() {
+		return entries.size();
+	}
+
+	/** Returns the number of lookups that found a lit texture that was already kept */
+	public long getHits() {
+		return hits;
+	}
+
+	/** Returns the number of lookups that had to light a texture */
+	public long getMisses() {
+		return misses;
+	}
+
+	private static long key(int textureIndex, int frame, int lightLevel) {
+		return ((long) textureIndex << 32) | ((long) frame << 8) | lightLevel;
+	}
+
+	/** Forgets the texture that was used longest ago, and returns it */
+	private Entry evictLeastRecentlyUsed() {
+		long oldest = 0;
+		long oldestUsed = Long.MAX_VALUE;
+		for (int slot = 0; slot < entries.capacity(); slot++) {
+			Entry entry = entries.valueAt(slot);
+			if (entry != null && entry.lastUsed < oldestUsed) {
+				oldest = entries.keyAt(slot);
+				oldestUsed = entry.lastUsed;
+			}
+		}
+		return entries.remove(oldest);
+	}
+
+}
@@ -1,5 +1,7 @@
 package net.thedanpage.game.graphics;
 
+import java.util.Arrays;
+
 import net.thedanpage.game.GameEngine;
 
 /**
@@ -69,6 +71,17 @@ public class Screen {
 		}
 	}
 
+	/**
+	 * Fills the background of some rows of the screen with a color, using an RGB
+	 * integer
+	 * 
+	 * @param top    the first row to fill
+	 * @param bottom the row after the last one to fill
+	 */
+	public void fillBG(int color, int top, int bottom) {
+		Arrays.fill(pixels, Math.max(0, top) * width, Math.min(height, bottom) * width, color);
+	}
+
 	public int getScreenOffsetX() {
 		return this.screenOffsetX;
 	}
@@ -0,0 +1,109 @@
+package net.thedanpage.game.graphics;
+
+import java.util.Arrays;
+
+/**
+ * An image that knows which of its pixels aren't transparent, so it can be
+ * drawn with {@link Graphics#drawSprite(int, int, Sprite)} by copying whole runs
+ * of pixels, rather than checking every pixel for transparency as it is drawn.
+ *
+ * <br>
+ * <br>
+ *
+ * The runs are found when the sprite is made. If its pixels are changed
+ * afterwards, {@link #updateSpans()} has to be called before it is drawn again.
+ *
+ * @author Dan
+ *
+ */
+public class Sprite {
+
+	private final int width, height;
+
+	/** The sprite's RGB pixels, a row at a time from the top, with -1 being transparent */
+	private final int[] pixels;
+
+	/**
+	 * The runs of pixels that aren't transparent, as start and end X coordinates.
+	 * The runs in row <code>y</code> go from <code>rowSpans[y]</code> up to
+	 * <code>rowSpans[y + 1]</code>.
+	 */
+	private int[] spans;
+
+	private final int[] rowSpans;
+
+	/** Whether every pixel of the sprite isn't transparent */
+	private boolean opaque;
+
+	public Sprite(int[] pixels, int width, int height) {
+		this.width = width;
+		this.height = height;
+		this.pixels = pixels;
+		this.spans = new int[2 * height];
+		this.rowSpans = new int[height + 1];
+		updateSpans();
+	}
+
+	/** Finds the runs of pixels that aren't transparent again, after the pixels have changed */
+	public void updateSpans() {
+		int numSpans = 0;
+		for (int y = 0; y < height; y++) {
+			rowSpans[y] = numSpans;
+			int row = y * width;
+			int x = 0;
+			while (x < width) {
+				while (x < width && pixels[row + x] == -1)
+					x++;
+				if (x == width)
+					break;
+				int start = x;
+				while (x < width && pixels[row + x] != -1)
+					x++;
+
+				if (numSpans + 2 > spans.length)
+					spans = Arrays.copyOf(spans, spans.length * 2);
+				spans[numSpans++] = start;
+				spans[numSpans++] = x;
+			}
+		}
+		rowSpans[height] = numSpans;
+
+		// A sprite with one full-width run in every row can be copied a row at a time
+		opaque = true;
+		for (int y = 0; y < height && opaque; y++)
+			opaque = rowSpans[y + 1] - rowSpans[y] == 2 && spans[rowSpans[y]] == 0 && spans[rowSpans[y] + 1] == width;
+	}
+
+	public int getWidth() {
+		return width;
+	}
+
+	public int getHeight() {
+		return height;
+	}
+
+	/** Returns the sprite's pixels. If they are changed, {@link #updateSpans()} has to be called. */
+	public int[] getPixels() {
+		return pixels;
+	}
+
+	/** Returns the runs of pixels that aren't transparent, as explained in {@link #getRowSpans()} */
+	int[] getSpans() {
+		return spans;
+	}
+
+	/**
+	 * Returns where each row's runs of pixels start in {@link #getSpans()}. The
+	 * runs in row <code>y</code> are the start and end X coordinates from
+	 * <code>getRowSpans()[y]</code> up to <code>getRowSpans()[y + 1]</code>.
+	 */
+	int[] getRowSpans() {
+		return rowSpans;
+	}
+
+	/** Returns whether every pixel of the sprite isn't transparent */
+	public boolean isOpaque() {
+		return opaque;
+	}
+
+}
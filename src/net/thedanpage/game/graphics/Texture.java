@@ -15,6 +15,12 @@ public class Texture implements Serializable {
 	private int width;
 	private int height;
 	private int[] pixels;
+
+	/** The texture as a {@link Sprite}, made when it is first drawn */
+	private transient Sprite sprite;
+
+	/** The texture flipped horizontally as a {@link Sprite}, made when it is first drawn */
+	private transient Sprite flippedSprite;
 	
 	public Texture() {
 	}
@@ -121,6 +127,8 @@ public class Texture implements Serializable {
 	 */
 	public void setPixel(int x, int y, int color) {
 		this.pixels[x + y * this.width] = color;
+		this.sprite = null;
+		this.flippedSprite = null;
 	}
 
 	/**
@@ -144,4 +152,26 @@ public class Texture implements Serializable {
 		return this.pixels;
 	}
 
+	/**
+	 * Returns the texture as a {@link Sprite} for drawing, which shares its pixels.
+	 * It is made again after {@link #setPixel(int, int, int)} is used.
+	 */
+	public Sprite getSprite() {
+		if (this.sprite == null)
+			this.sprite = new Sprite(this.pixels, this.width, this.height);
+		return this.sprite;
+	}
+
+	/**
+	 * Returns the texture flipped horizontally as a {@link Sprite} for drawing, so
+	 * that it doesn't have to be flipped every time it is drawn. It is made again
+	 * after {@link #setPixel(int, int, int)} is used.
+	 */
+	public Sprite getFlippedSprite() {
+		if (this.flippedSprite == null)
+			this.flippedSprite = new Sprite(Graphics.flipHorizontal(this.width, this.height, this.pixels), this.width,
+					this.height);
+		return this.flippedSprite;
+	}
+
 }
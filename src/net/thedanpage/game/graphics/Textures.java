@@ -36,6 +36,15 @@ public class Textures {
 	 */
 	private static Map<String, Texture> blockTextures = new HashMap<String, Texture>();
 
+	/**
+	 * Block textures indexed by {@link Blocks#textureIndex}, so that blocks don't
+	 * need to look their texture up by name
+	 */
+	private static Texture[] blockTexturesByIndex = new Texture[0];
+
+	/** Block textures that have already been lit, so blocks don't have to be lit as they are drawn */
+	private static LitTextureCache litBlockTextures = new LitTextureCache();
+
 	@SuppressWarnings("unchecked")
 	public static void init() {
 
@@ -135,7 +144,13 @@ public class Textures {
 			else
 				Blocks.BLOCK_ANIM_TIMER_LENGTH *= animTextureFramesList.get(i);
 		}
-		
+
+		// Index the block textures the same way as Blocks.textureIndex
+		blockTexturesByIndex = new Texture[Blocks.blockTextureNames.size()];
+		for (int i = 0; i < blockTexturesByIndex.length; i++)
+			blockTexturesByIndex[i] = blockTextures.get(Blocks.blockTextureNames.get(i));
+		litBlockTextures.clear();
+
 	}
 
 	/** Returns a texture based on its reference name */
@@ -148,4 +163,32 @@ public class Textures {
 		return blockTextures.get(block);
 	}
 
+	/** Returns a block texture based on its index in {@link Blocks#textureIndex} */
+	public static Texture getBlockTexture(int textureIndex) {
+		return blockTexturesByIndex[textureIndex];
+	}
+
+	/**
+	 * Returns the pixels of a block texture with lighting applied, from
+	 * {@link LitTextureCache#getBlockTexture(int, int, int)}. The array is shared,
+	 * so it must not be changed.
+	 */
+	public static int[] getLitBlockTexture(int textureIndex, int frame, int lightLevel) {
+		return litBlockTextures.getBlockTexture(textureIndex, frame, lightLevel);
+	}
+
+	/**
+	 * Returns a block texture with lighting applied as a {@link Sprite}, from
+	 * {@link LitTextureCache#getBlockSprite(int, int, int)}. The sprite is shared,
+	 * so it must not be changed.
+	 */
+	public static Sprite getLitBlockSprite(int textureIndex, int frame, int lightLevel) {
+		return litBlockTextures.getBlockSprite(textureIndex, frame, lightLevel);
+	}
+
+	/** Returns the cache of lit block textures, for measuring how well it is working */
+	public static LitTextureCache getLitBlockTextures() {
+		return litBlockTextures;
+	}
+
 }
@@ -0,0 +1,99 @@
+package net.thedanpage.game.tools;
+
+import net.thedanpage.game.framework.Util;
+import net.thedanpage.game.world.map.Chunk;
+import net.thedanpage.game.world.map.Map;
+import net.thedanpage.game.world.map.block.Blocks;
+import net.thedanpage.game.world.map.terrain.TerrainGen;
+
+/**
+ * Compares how much memory a fully generated world takes up, including light
+ * levels, when its chunk sections store an array of block objects, and when
+ * they use a {@link net.thedanpage.game.world.map.PalettedBlockStorage}. Run it
+ * with an optional seed as the first argument.
+ *
+ * @author Dan
+ *
+ */
+public class ChunkMemoryBenchmark {
+
+	public static void main(String[] args) {
+		int seed = args.length > 0 ? Integer.parseInt(args[0]) : 1234567;
+
+		Util.init();
+		Blocks.loadProperties();
+
+		// Warm up so that class loading doesn't count towards the first measurement
+		generateWorld(false, seed);
+		generateWorld(true, seed);
+
+		long arrayBytes = measureWorld(false, seed);
+		long palettedBytes = measureWorld(true, seed);
+
+		// Count how many sections ended up shared, which take up no memory of their own
+		Chunk[] chunks = generateWorld(true, seed);
+		int sharedSections = 0;
+		int emptySections = 0;
+		for (Chunk chunk : chunks) {
+			for (int i = 0; i < Chunk.NUM_SECTIONS; i++) {
+				if (chunk.getSection(i).isShared())
+					sharedSections++;
+				if (chunk.getSection(i).isEmpty())
+					emptySections++;
+			}
+		}
+
+		System.out.println("Seed: " + seed + ", chunks: " + Map.MAP_SIZE_CHUNKS);
+		System.out.println("Block arrays:     " + arrayBytes / 1024 + " KB");
+		System.out.println("Paletted storage: " + palettedBytes / 1024 + " KB");
+		System.out.println("Memory ratio: " + Util.formatDoubleForString((double) arrayBytes / palettedBytes));
+		System.out.println("Shared sections: " + sharedSections + " of " + chunks.length * Chunk.NUM_SECTIONS + " ("
+				+ emptySections + " all air)");
+
+		// Light the world to see how much its light levels take up
+		Map map = new Map();
+		long lightBytes = 0;
+		for (Chunk chunk : chunks) {
+			map.putChunk(chunk);
+			lightBytes += chunk.getLightLevelBytes();
+		}
+		System.out.println("Light levels: " + lightBytes / 1024 + " KB (" + lightBytes / chunks.length
+				+ " bytes per chunk)");
+	}
+
+	/** Returns the number of bytes retained by a fully generated world */
+	private static long measureWorld(boolean paletted, int seed) {
+		long before = usedMemory();
+		Chunk[] chunks = generateWorld(paletted, seed);
+		long after = usedMemory();
+
+		// Keep the chunks reachable until after the measurement
+		if (chunks[chunks.length - 1].isGenerated())
+			return after - before;
+		return -1;
+	}
+
+	private static Chunk[] generateWorld(boolean paletted, int seed) {
+		TerrainGen terrainGen = new TerrainGen(seed);
+		Chunk[] chunks = new Chunk[Map.MAP_SIZE_CHUNKS];
+		for (int i = 0; i < chunks.length; i++) {
+			chunks[i] = new Chunk(i * Chunk.CHUNK_WIDTH, paletted);
+			chunks[i].generate(terrainGen);
+		}
+		return chunks;
+	}
+
+	private static long usedMemory() {
+		Runtime runtime = Runtime.getRuntime();
+		for (int i = 0; i < 4; i++) {
+			System.gc();
+			try {
+				Thread.sleep(50);
+			} catch (InterruptedException e) {
+				e.printStackTrace();
+			}
+		}
+		return runtime.totalMemory() - runtime.freeMemory();
+	}
+
+}
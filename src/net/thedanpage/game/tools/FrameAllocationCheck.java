@@ -0,0 +1,129 @@
+package net.thedanpage.game.tools;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+
+import net.thedanpage.game.Game;
+import net.thedanpage.game.framework.Util;
+import net.thedanpage.game.graphics.Fonts;
+import net.thedanpage.game.graphics.Screen;
+import net.thedanpage.game.graphics.Textures;
+import net.thedanpage.game.world.entity.Entity;
+import net.thedanpage.game.world.map.Chunk;
+import net.thedanpage.game.world.map.Map;
+import net.thedanpage.game.world.map.Sky;
+import net.thedanpage.game.world.map.block.Blocks;
+
+/**
+ * Draws frames without opening the game window, and measures how many bytes
+ * each one allocates using the allocation counter of the current thread. The
+ * player walks back and forth along the surface while blocks and the sun
+ * animate, and the world is drawn both from chunk tiles and a block at a time.
+ *
+ * <br>
+ * <br>
+ *
+ * Once everything on the screen has been drawn once, drawing a frame shouldn't
+ * allocate anything, so it exits with an error if a frame allocates more than
+ * the budget on average. Whole frames, with the text on the top left of the
+ * screen, are also measured, which shows the player's position changing every
+ * frame.
+ *
+ * <br>
+ * <br>
+ *
+ * Arguments, all optional: the seed, the number of frames to draw (1000 by
+ * default), and the budget in bytes per frame (0 by default).
+ *
+ * @author Dan
+ *
+ */
+public class FrameAllocationCheck {
+
+	/** How many blocks the player walks each way */
+	private static final int WALK_DISTANCE = 40;
+
+	private static com.sun.management.ThreadMXBean threads;
+
+	public static void main(String[] args) {
+		int seed = args.length > 0 ? Integer.parseInt(args[0]) : 1234567;
+		int frames = args.length > 1 ? Integer.parseInt(args[1]) : 1000;
+		long budget = args.length > 2 ? Long.parseLong(args[2]) : 0;
+
+		// Nothing is shown, so don't let AWT look for a display
+		System.setProperty("java.awt.headless", "true");
+		Util.init();
+		Blocks.loadProperties();
+		Textures.init();
+		Fonts.init();
+		Game.screen = new Screen(Game.WIDTH, Game.HEIGHT);
+
+		Map map = new Map();
+		map.init(seed, false);
+		List<Chunk> chunks = new ArrayList<Chunk>();
+		for (int i = 0; i < Map.MAP_SIZE_CHUNKS; i++) {
+			Chunk chunk = new Chunk(i * Chunk.CHUNK_WIDTH);
+			chunk.generate(map.getTerrainGen());
+			chunks.add(chunk);
+		}
+		map.putChunks(chunks);
+
+		threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+		Entity player = map.getEntityGroup(Entity.ENTITY_GROUP_PLAYERS).get(0);
+		int startX = (int) player.getX();
+
+		// Walk the whole way both ways first, so that every texture and tile that is
+		// needed has been made, and compilation isn't counted. The text needs a few
+		// more walks than the world before the compiler stops replacing its code.
+		for (int i = 0; i < 6; i++) {
+			measure(map, player, startX, false, false, 4 * WALK_DISTANCE);
+			measure(map, player, startX, true, false, 4 * WALK_DISTANCE);
+			measure(map, player, startX, true, true, 4 * WALK_DISTANCE);
+		}
+
+		long blockBytes = measure(map, player, startX, false, false, frames);
+		long tileBytes = measure(map, player, startX, true, false, frames);
+		long frameBytes = measure(map, player, startX, true, true, frames);
+
+		System.out.println("Seed: " + seed + ", screen: " + Game.WIDTH + "x" + Game.HEIGHT + ", frames: " + frames);
+		System.out.println("Allocated per frame, a block at a time: " + perFrame(blockBytes, frames) + " bytes");
+		System.out.println("Allocated per frame, from tiles:        " + perFrame(tileBytes, frames) + " bytes");
+		System.out.println("Allocated per frame, with the text:     " + perFrame(frameBytes, frames) + " bytes");
+		System.out.println("Budget: " + budget + " bytes per frame");
+
+		// Compare the totals, so that a few bytes a frame aren't rounded away
+		long totalBudget = budget * frames;
+		if (blockBytes > totalBudget || tileBytes > totalBudget || frameBytes > totalBudget)
+			System.exit(1);
+	}
+
+	/** Draws some frames and returns the total number of bytes allocated by them */
+	private static long measure(Map map, Entity player, int startX, boolean tiles, boolean hud, int frames) {
+		map.setRenderingWithTiles(tiles);
+		long threadId = Thread.currentThread().getId();
+		long allocated = 0;
+		for (int i = 0; i < frames; i++) {
+			// Move the player outside of the measured part, since that isn't drawing
+			int step = i % (2 * WALK_DISTANCE);
+			int x = startX + (step < WALK_DISTANCE ? step : 2 * WALK_DISTANCE - step);
+			player.setPosition(x, map.getSurfaceHeight(x));
+			Blocks.update();
+			Sky.update();
+
+			long before = threads.getThreadAllocatedBytes(threadId);
+			if (hud)
+				map.render();
+			else
+				map.renderWorld();
+			allocated += threads.getThreadAllocatedBytes(threadId) - before;
+		}
+		return allocated;
+	}
+
+	/** Returns the average number of bytes allocated by each frame, as text */
+	private static String perFrame(long allocated, int frames) {
+		return Util.formatDoubleForString((double) allocated / frames);
+	}
+
+}
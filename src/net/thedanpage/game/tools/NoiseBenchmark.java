@@ -0,0 +1,168 @@
+package net.thedanpage.game.tools;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import net.thedanpage.game.framework.Util;
+import net.thedanpage.game.world.map.terrain.NoiseGenerator;
+import net.thedanpage.game.world.map.terrain.SimplexNoise;
+
+/**
+ * Compares the speed of the static {@link SimplexNoise} with a seeded
+ * {@link NoiseGenerator}, sampling the coordinates the terrain generator uses.
+ * The static version is timed both the way the terrain generator used to call
+ * it, with the seed as an extra coordinate, and at the same coordinates as the
+ * seeded generator, since which simplices get sampled affects the speed. The
+ * seeded generator's row and column fills are timed as well. It then checks
+ * that one generator shared by several threads gives the same results as a
+ * single thread. Run it with an optional seed as the first argument.
+ *
+ * @author Dan
+ *
+ */
+public class NoiseBenchmark {
+
+	/** The number of block columns sampled in each run */
+	private static final int COLUMNS = 1600;
+
+	/** The number of rows sampled in each column for 3D noise */
+	private static final int ROWS = 128;
+
+	private static final int RUNS = 10;
+
+	public static void main(String[] args) throws Exception {
+		int seed = args.length > 0 ? Integer.parseInt(args[0]) : 1234567;
+		NoiseGenerator generator = new NoiseGenerator(seed);
+
+		// Warm up so that compilation isn't counted
+		for (int i = 0; i < 3; i++) {
+			staticSurface(seed);
+			staticOres(seed);
+			staticOres(0);
+			instanceSurface(generator);
+			instanceSurfaceRows(generator);
+			instanceOres(generator);
+			instanceOreColumns(generator);
+		}
+
+		double staticSurface = 0, staticOres = 0, staticOresSameCoords = 0, instanceSurface = 0, instanceSurfaceRows = 0,
+				instanceOres = 0, instanceOreColumns = 0;
+		double checksum = 0;
+		for (int i = 0; i < RUNS; i++) {
+			long start = System.nanoTime();
+			checksum += staticSurface(seed);
+			staticSurface += System.nanoTime() - start;
+
+			start = System.nanoTime();
+			checksum += instanceSurface(generator);
+			instanceSurface += System.nanoTime() - start;
+
+			start = System.nanoTime();
+			checksum += instanceSurfaceRows(generator);
+			instanceSurfaceRows += System.nanoTime() - start;
+
+			start = System.nanoTime();
+			checksum += staticOres(seed);
+			staticOres += System.nanoTime() - start;
+
+			start = System.nanoTime();
+			checksum += staticOres(0);
+			staticOresSameCoords += System.nanoTime() - start;
+
+			start = System.nanoTime();
+			checksum += instanceOres(generator);
+			instanceOres += System.nanoTime() - start;
+
+			start = System.nanoTime();
+			checksum += instanceOreColumns(generator);
+			instanceOreColumns += System.nanoTime() - start;
+		}
+
+		double surfaceSamples = (double) COLUMNS * ROWS * RUNS;
+		double oreSamples = (double) COLUMNS * ROWS * RUNS;
+		System.out.println("Seed: " + seed + " (checksum " + Util.formatDoubleForString(checksum) + ")");
+		System.out.println("2D surface noise, ns per sample:");
+		System.out.println("  SimplexNoise, y = seed: " + Util.formatDoubleForString(staticSurface / surfaceSamples));
+		System.out.println("  NoiseGenerator, y = 0:  " + Util.formatDoubleForString(instanceSurface / surfaceSamples));
+		System.out.println("  NoiseGenerator rows:    " + Util.formatDoubleForString(instanceSurfaceRows / surfaceSamples));
+		System.out.println("3D ore noise, ns per sample:");
+		System.out.println("  SimplexNoise, z = seed: " + Util.formatDoubleForString(staticOres / oreSamples));
+		System.out.println("  SimplexNoise, z = 0:    " + Util.formatDoubleForString(staticOresSameCoords / oreSamples));
+		System.out.println("  NoiseGenerator, z = 0:  " + Util.formatDoubleForString(instanceOres / oreSamples));
+		System.out.println("  NoiseGenerator columns: " + Util.formatDoubleForString(instanceOreColumns / oreSamples));
+
+		// Share one generator between threads, and make sure every thread sees the
+		// same noise
+		double expected = instanceOres(generator);
+		int numThreads = Math.max(2, Runtime.getRuntime().availableProcessors());
+		ExecutorService executor = Executors.newFixedThreadPool(numThreads);
+		List<Future<Double>> results = new ArrayList<Future<Double>>();
+		for (int i = 0; i < numThreads * 4; i++)
+			results.add(executor.submit(() -> instanceOres(generator)));
+
+		int mismatches = 0;
+		for (Future<Double> result : results) {
+			if (result.get() != expected)
+				mismatches++;
+		}
+		executor.shutdown();
+		System.out.println("Shared across " + numThreads + " threads: " + mismatches + " of " + results.size()
+				+ " runs differed");
+	}
+
+	private static double staticSurface(int seed) {
+		double sum = 0;
+		for (int x = 0; x < COLUMNS * ROWS; x++)
+			sum += SimplexNoise.noise(x / 32.0, seed);
+		return sum;
+	}
+
+	private static double instanceSurface(NoiseGenerator generator) {
+		double sum = 0;
+		for (int x = 0; x < COLUMNS * ROWS; x++)
+			sum += generator.noise(x / 32.0, 0);
+		return sum;
+	}
+
+	private static double instanceSurfaceRows(NoiseGenerator generator) {
+		double[] row = new double[ROWS];
+		double sum = 0;
+		for (int i = 0; i < COLUMNS; i++) {
+			generator.noiseRow(row, 0, ROWS, i * ROWS / 32.0, 1 / 32.0, 0);
+			for (int x = 0; x < ROWS; x++)
+				sum += row[x];
+		}
+		return sum;
+	}
+
+	private static double staticOres(int z) {
+		double sum = 0;
+		for (int x = 0; x < COLUMNS; x++)
+			for (int y = 0; y < ROWS; y++)
+				sum += SimplexNoise.noise(x, y, z);
+		return sum;
+	}
+
+	private static double instanceOres(NoiseGenerator generator) {
+		double sum = 0;
+		for (int x = 0; x < COLUMNS; x++)
+			for (int y = 0; y < ROWS; y++)
+				sum += generator.noise(x, y, 0);
+		return sum;
+	}
+
+	private static double instanceOreColumns(NoiseGenerator generator) {
+		double[] column = new double[ROWS];
+		double sum = 0;
+		for (int x = 0; x < COLUMNS; x++) {
+			generator.noiseColumn(column, 0, ROWS, x, 0, 0);
+			for (int y = 0; y < ROWS; y++)
+				sum += column[y];
+		}
+		return sum;
+	}
+
+}
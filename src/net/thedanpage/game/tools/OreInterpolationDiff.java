@@ -0,0 +1,136 @@
+package net.thedanpage.game.tools;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+
+import javax.imageio.ImageIO;
+
+import net.thedanpage.game.framework.Util;
+import net.thedanpage.game.world.map.Chunk;
+import net.thedanpage.game.world.map.Map;
+import net.thedanpage.game.world.map.block.Block;
+import net.thedanpage.game.world.map.block.BlockFactory;
+import net.thedanpage.game.world.map.block.Blocks;
+import net.thedanpage.game.world.map.terrain.TerrainGen;
+
+/**
+ * Generates a world with every ore's noise sampled at full resolution, and
+ * again with the ore noise interpolated from a coarse lattice, and reports how
+ * many ore cells differ and how many noise samples each one takes per chunk.
+ *
+ * <br>
+ * <br>
+ *
+ * Arguments, all optional: the seed, the lattice steps for coal, iron and
+ * diamonds separated by commas (<code>4,4,2</code> by default), and a PNG file
+ * to draw the differences to. In the image, ore that only appears at full
+ * resolution is red, ore that only appears when interpolated is green, cells
+ * with a different ore are yellow and ore that is the same in both is grey.
+ *
+ * @author Dan
+ *
+ */
+public class OreInterpolationDiff {
+
+	/** The lattice steps compared against full resolution if none are given */
+	private static final int[] DEFAULT_STEPS = { 4, 4, 2 };
+
+	private static final String[] ORE_NAMES = { "coal_ore", "iron_ore", "diamond_ore" };
+
+	private static final int COLOR_SAME = 0x808080, COLOR_FULL_ONLY = 0xff0000, COLOR_INTERPOLATED_ONLY = 0x00ff00,
+			COLOR_DIFFERENT_ORE = 0xffff00;
+
+	public static void main(String[] args) throws IOException {
+		int seed = args.length > 0 ? Integer.parseInt(args[0]) : 1234567;
+		int[] steps = DEFAULT_STEPS.clone();
+		if (args.length > 1) {
+			String[] parts = args[1].split(",");
+			for (int i = 0; i < TerrainGen.NUM_ORES && i < parts.length; i++)
+				steps[i] = Integer.parseInt(parts[i].trim());
+		}
+		File imageFile = args.length > 2 ? new File(args[2]) : null;
+
+		Util.init();
+		Blocks.loadProperties();
+
+		Block[] ores = new Block[TerrainGen.NUM_ORES];
+		for (int i = 0; i < ores.length; i++)
+			ores[i] = BlockFactory.getBlock(ORE_NAMES[i]);
+
+		TerrainGen fullResolution = new TerrainGen(seed, TerrainGen.FULL_RESOLUTION_ORE_LATTICE_STEPS);
+		TerrainGen interpolated = new TerrainGen(seed, steps);
+
+		int chunks = Map.MAP_SIZE_CHUNKS;
+		BufferedImage image = imageFile == null ? null
+				: new BufferedImage(chunks * Chunk.CHUNK_WIDTH, Map.MAP_HEIGHT, BufferedImage.TYPE_INT_RGB);
+
+		int[] fullCounts = new int[TerrainGen.NUM_ORES];
+		int[] interpolatedCounts = new int[TerrainGen.NUM_ORES];
+		int[] changed = new int[TerrainGen.NUM_ORES];
+		int changedCells = 0;
+
+		for (int c = 0; c < chunks; c++) {
+			Block[][] full = fullResolution.generateChunk(c * Chunk.CHUNK_WIDTH);
+			Block[][] coarse = interpolated.generateChunk(c * Chunk.CHUNK_WIDTH);
+
+			for (int x = 0; x < Chunk.CHUNK_WIDTH; x++) {
+				for (int y = 0; y < Map.MAP_HEIGHT; y++) {
+					int fullOre = indexOf(ores, full[x][y]);
+					int coarseOre = indexOf(ores, coarse[x][y]);
+					if (fullOre >= 0)
+						fullCounts[fullOre]++;
+					if (coarseOre >= 0)
+						interpolatedCounts[coarseOre]++;
+
+					int color = 0;
+					if (fullOre != coarseOre) {
+						changedCells++;
+						if (fullOre >= 0)
+							changed[fullOre]++;
+						if (coarseOre >= 0)
+							changed[coarseOre]++;
+
+						if (coarseOre < 0)
+							color = COLOR_FULL_ONLY;
+						else if (fullOre < 0)
+							color = COLOR_INTERPOLATED_ONLY;
+						else
+							color = COLOR_DIFFERENT_ORE;
+					} else if (fullOre >= 0)
+						color = COLOR_SAME;
+
+					if (image != null)
+						image.setRGB(c * Chunk.CHUNK_WIDTH + x, Map.MAP_HEIGHT - 1 - y, color);
+				}
+			}
+		}
+
+		System.out.println("Seed: " + seed + ", chunks: " + chunks);
+		for (int i = 0; i < TerrainGen.NUM_ORES; i++) {
+			System.out.println("  " + ORE_NAMES[i] + " (step " + interpolated.getOreLatticeStep(i) + "): "
+					+ fullCounts[i] + " at full resolution, " + interpolatedCounts[i] + " interpolated, " + changed[i]
+					+ " cells changed");
+		}
+		System.out.println("Ore cells changed: " + changedCells);
+		System.out.println("Noise samples per chunk: "
+				+ Util.formatDoubleForString((double) fullResolution.getNoiseEvaluations() / chunks)
+				+ " at full resolution, "
+				+ Util.formatDoubleForString((double) interpolated.getNoiseEvaluations() / chunks) + " interpolated");
+
+		if (image != null) {
+			ImageIO.write(image, "png", imageFile);
+			System.out.println("Wrote " + imageFile.getPath());
+		}
+	}
+
+	/** Returns the index of a block in an array, or -1 if it isn't there */
+	private static int indexOf(Block[] blocks, Block block) {
+		for (int i = 0; i < blocks.length; i++) {
+			if (blocks[i] == block)
+				return i;
+		}
+		return -1;
+	}
+
+}
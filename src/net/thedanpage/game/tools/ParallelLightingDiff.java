@@ -0,0 +1,122 @@
+package net.thedanpage.game.tools;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import net.thedanpage.game.framework.Util;
+import net.thedanpage.game.world.map.Chunk;
+import net.thedanpage.game.world.map.Map;
+import net.thedanpage.game.world.map.block.Block;
+import net.thedanpage.game.world.map.block.BlockFactory;
+import net.thedanpage.game.world.map.block.Blocks;
+import net.thedanpage.game.world.map.terrain.TerrainGen;
+
+/**
+ * Lights the same world one chunk at a time and in parallel, and reports how
+ * many cells have different light and how long each one took. The two should
+ * always match, so it exits with an error if any cell is different.
+ *
+ * <br>
+ * <br>
+ *
+ * Lava is scattered through the world first, since generated terrain has no
+ * light source blocks. For the parallel lighting, every fourth chunk is lit on
+ * its own first, so that the rest also have to spread light into chunks that
+ * were already lit.
+ *
+ * <br>
+ * <br>
+ *
+ * Arguments, both optional: the seed, and the number of lava blocks to scatter
+ * (500 by default).
+ *
+ * @author Dan
+ *
+ */
+public class ParallelLightingDiff {
+
+	public static void main(String[] args) {
+		int seed = args.length > 0 ? Integer.parseInt(args[0]) : 1234567;
+		int lavaBlocks = args.length > 1 ? Integer.parseInt(args[1]) : 500;
+
+		Util.init();
+		Blocks.loadProperties();
+
+		// Warm up so that compilation isn't counted against either one
+		lightOneAtATime(generateWorld(seed, lavaBlocks));
+		lightInParallel(generateWorld(seed, lavaBlocks));
+
+		Chunk[] single = generateWorld(seed, lavaBlocks);
+		long start = System.nanoTime();
+		lightOneAtATime(single);
+		long singleTime = System.nanoTime() - start;
+
+		Chunk[] parallel = generateWorld(seed, lavaBlocks);
+		start = System.nanoTime();
+		lightInParallel(parallel);
+		long parallelTime = System.nanoTime() - start;
+
+		int skyDifferences = 0;
+		int blockDifferences = 0;
+		for (int i = 0; i < single.length; i++) {
+			for (int x = single[i].getX(); x < single[i].getX() + Chunk.CHUNK_WIDTH; x++) {
+				for (int y = 0; y < Map.MAP_HEIGHT; y++) {
+					if (single[i].getSkyLight(x, y) != parallel[i].getSkyLight(x, y))
+						skyDifferences++;
+					if (single[i].getBlockLight(x, y) != parallel[i].getBlockLight(x, y))
+						blockDifferences++;
+				}
+			}
+		}
+
+		System.out.println("Seed: " + seed + ", chunks: " + Map.MAP_SIZE_CHUNKS + ", lava blocks: " + lavaBlocks);
+		System.out.println("One at a time: " + Util.formatDoubleForString(singleTime / 1e6) + " ms");
+		System.out.println("In parallel:   " + Util.formatDoubleForString(parallelTime / 1e6) + " ms ("
+				+ Runtime.getRuntime().availableProcessors() + " cores)");
+		System.out.println("Cells with different sky light:   " + skyDifferences);
+		System.out.println("Cells with different block light: " + blockDifferences);
+
+		if (skyDifferences + blockDifferences > 0)
+			System.exit(1);
+	}
+
+	/** Lights every chunk of a world on its own, in order */
+	private static void lightOneAtATime(Chunk[] chunks) {
+		Map map = new Map();
+		for (Chunk chunk : chunks)
+			map.putChunk(chunk);
+	}
+
+	/** Lights every fourth chunk of a world on its own, then the rest together */
+	private static void lightInParallel(Chunk[] chunks) {
+		Map map = new Map();
+		List<Chunk> rest = new ArrayList<Chunk>();
+		for (int i = 0; i < chunks.length; i++) {
+			if (i % 4 == 0)
+				map.putChunk(chunks[i]);
+			else
+				rest.add(chunks[i]);
+		}
+		map.putChunks(rest);
+	}
+
+	/** Generates every chunk of a world, with lava scattered through it */
+	private static Chunk[] generateWorld(int seed, int lavaBlocks) {
+		TerrainGen terrainGen = new TerrainGen(seed);
+		Chunk[] chunks = new Chunk[Map.MAP_SIZE_CHUNKS];
+		for (int i = 0; i < chunks.length; i++) {
+			chunks[i] = new Chunk(i * Chunk.CHUNK_WIDTH);
+			chunks[i].generate(terrainGen);
+		}
+
+		Block lava = BlockFactory.getBlock("lava");
+		Random random = new Random(seed);
+		for (int i = 0; i < lavaBlocks; i++) {
+			Chunk chunk = chunks[random.nextInt(chunks.length)];
+			chunk.setBlock(lava, chunk.getX() + random.nextInt(Chunk.CHUNK_WIDTH), random.nextInt(80));
+		}
+		return chunks;
+	}
+
+}
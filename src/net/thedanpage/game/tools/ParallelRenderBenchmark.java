@@ -0,0 +1,109 @@
+package net.thedanpage.game.tools;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import net.thedanpage.game.Game;
+import net.thedanpage.game.framework.Util;
+import net.thedanpage.game.graphics.Fonts;
+import net.thedanpage.game.graphics.Screen;
+import net.thedanpage.game.graphics.Textures;
+import net.thedanpage.game.world.entity.Entity;
+import net.thedanpage.game.world.map.Chunk;
+import net.thedanpage.game.world.map.Map;
+import net.thedanpage.game.world.map.block.Blocks;
+
+/**
+ * Measures how many frames of the world can be drawn per second when the screen
+ * is split into bands drawn by 1 up to N threads, without opening the game
+ * window. The screen can be made bigger than the game's, to see how drawing in
+ * bands scales on larger screens. The player stands on the surface, so that the
+ * screen has both sky and terrain on it.
+ *
+ * <br>
+ * <br>
+ *
+ * Each frame drawn in bands is also checked against one drawn on the game
+ * thread, and it exits with an error if any pixels are different.
+ *
+ * <br>
+ * <br>
+ *
+ * Arguments, all optional: the seed, the number of frames to draw (300 by
+ * default), the screen's width and height (1920x1080 by default), and the most
+ * threads to try (the number of cores by default).
+ *
+ * @author Dan
+ *
+ */
+public class ParallelRenderBenchmark {
+
+	public static void main(String[] args) {
+		int seed = args.length > 0 ? Integer.parseInt(args[0]) : 1234567;
+		int frames = args.length > 1 ? Integer.parseInt(args[1]) : 300;
+		int width = args.length > 2 ? Integer.parseInt(args[2]) : 1920;
+		int height = args.length > 3 ? Integer.parseInt(args[3]) : 1080;
+		int maxThreads = args.length > 4 ? Integer.parseInt(args[4]) : Runtime.getRuntime().availableProcessors();
+
+		// Nothing is shown, so don't let AWT look for a display
+		System.setProperty("java.awt.headless", "true");
+		Util.init();
+		Blocks.loadProperties();
+		Textures.init();
+		Fonts.init();
+		Game.screen = new Screen(width, height);
+
+		Map map = new Map();
+		map.init(seed, false);
+		List<Chunk> chunks = new ArrayList<Chunk>();
+		for (int i = 0; i < Map.MAP_SIZE_CHUNKS; i++) {
+			Chunk chunk = new Chunk(i * Chunk.CHUNK_WIDTH);
+			chunk.generate(map.getTerrainGen());
+			chunks.add(chunk);
+		}
+		map.putChunks(chunks);
+
+		Entity player = map.getEntityGroup(Entity.ENTITY_GROUP_PLAYERS).get(0);
+		int x = (int) player.getX();
+		player.setPosition(x, map.getSurfaceHeight(x));
+
+		// Draw a frame on the game thread to compare the others against. The first
+		// frame is drawn twice, since the sun is drawn before the screen moves.
+		map.setRenderThreads(1);
+		map.renderWorld();
+		map.renderWorld();
+		int[] expected = Game.screen.pixels.clone();
+
+		System.out.println("Seed: " + seed + ", screen: " + width + "x" + height + ", frames: " + frames);
+
+		boolean different = false;
+		double singleFps = 0;
+		for (int threads = 1; threads <= maxThreads; threads++) {
+			map.setRenderThreads(threads);
+
+			// Warm up so that compilation isn't counted
+			measure(map, frames);
+			double fps = measure(map, frames);
+			if (threads == 1)
+				singleFps = fps;
+
+			boolean same = Arrays.equals(expected, Game.screen.pixels);
+			different |= !same;
+			System.out.println(threads + (threads == 1 ? " thread:  " : " threads: ") + Util.formatDoubleForString(fps)
+					+ " fps, speedup " + Util.formatDoubleForString(fps / singleFps) + (same ? "" : ", pixels differ"));
+		}
+
+		if (different)
+			System.exit(1);
+	}
+
+	/** Draws some frames and returns how many were drawn per second */
+	private static double measure(Map map, int frames) {
+		long start = System.nanoTime();
+		for (int i = 0; i < frames; i++)
+			map.renderWorld();
+		return frames / ((System.nanoTime() - start) / 1e9);
+	}
+
+}
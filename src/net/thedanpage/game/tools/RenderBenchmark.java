@@ -0,0 +1,87 @@
+package net.thedanpage.game.tools;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import net.thedanpage.game.Game;
+import net.thedanpage.game.framework.Util;
+import net.thedanpage.game.graphics.Fonts;
+import net.thedanpage.game.graphics.Screen;
+import net.thedanpage.game.graphics.Textures;
+import net.thedanpage.game.world.entity.Entity;
+import net.thedanpage.game.world.map.Chunk;
+import net.thedanpage.game.world.map.Map;
+import net.thedanpage.game.world.map.block.Blocks;
+
+/**
+ * Measures how many frames of the world can be drawn per second, without
+ * opening the game window, with chunks drawn a block at a time and from
+ * {@link net.thedanpage.game.world.map.ChunkTileCache} tiles. The player is put
+ * underground, so that the whole screen is filled with terrain.
+ *
+ * <br>
+ * <br>
+ *
+ * Run it with an optional seed and number of frames to draw.
+ *
+ * @author Dan
+ *
+ */
+public class RenderBenchmark {
+
+	/** How far below the ground the player is put */
+	private static final int DEPTH = 30;
+
+	public static void main(String[] args) {
+		int seed = args.length > 0 ? Integer.parseInt(args[0]) : 1234567;
+		int frames = args.length > 1 ? Integer.parseInt(args[1]) : 500;
+
+		// Nothing is shown, so don't let AWT look for a display
+		System.setProperty("java.awt.headless", "true");
+		Util.init();
+		Blocks.loadProperties();
+		Textures.init();
+		Fonts.init();
+		Game.screen = new Screen(Game.WIDTH, Game.HEIGHT);
+
+		Map map = new Map();
+		map.init(seed, false);
+		List<Chunk> chunks = new ArrayList<Chunk>();
+		for (int i = 0; i < Map.MAP_SIZE_CHUNKS; i++) {
+			Chunk chunk = new Chunk(i * Chunk.CHUNK_WIDTH);
+			chunk.generate(map.getTerrainGen());
+			chunks.add(chunk);
+		}
+		map.putChunks(chunks);
+
+		Entity player = map.getEntityGroup(Entity.ENTITY_GROUP_PLAYERS).get(0);
+		int x = (int) player.getX();
+		player.setPosition(x, map.getSurfaceHeight(x) - DEPTH);
+
+		System.out.println("Seed: " + seed + ", screen: " + Game.WIDTH + "x" + Game.HEIGHT + ", frames: " + frames);
+
+		// Warm up both ways so that compilation isn't counted against either one
+		measure(map, false, frames);
+		measure(map, true, frames);
+
+		double blockFps = measure(map, false, frames);
+		long tilesDrawn = map.getChunkTiles().getTilesDrawn();
+		double tileFps = measure(map, true, frames);
+		tilesDrawn = map.getChunkTiles().getTilesDrawn() - tilesDrawn;
+
+		System.out.println("A block at a time: " + Util.formatDoubleForString(blockFps) + " fps");
+		System.out.println("From tiles:        " + Util.formatDoubleForString(tileFps) + " fps ("
+				+ tilesDrawn + " tiles drawn)");
+		System.out.println("Speedup: " + Util.formatDoubleForString(tileFps / blockFps));
+	}
+
+	/** Draws some frames and returns how many were drawn per second */
+	private static double measure(Map map, boolean tiles, int frames) {
+		map.setRenderingWithTiles(tiles);
+		long start = System.nanoTime();
+		for (int i = 0; i < frames; i++)
+			map.render();
+		return frames / ((System.nanoTime() - start) / 1e9);
+	}
+
+}
@@ -0,0 +1,283 @@
+package net.thedanpage.game.tools;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import net.thedanpage.game.framework.Util;
+import net.thedanpage.game.world.map.Chunk;
+import net.thedanpage.game.world.map.Map;
+import net.thedanpage.game.world.map.block.Block;
+import net.thedanpage.game.world.map.block.BlockFactory;
+import net.thedanpage.game.world.map.block.Blocks;
+import net.thedanpage.game.world.map.terrain.OreStage;
+import net.thedanpage.game.world.map.terrain.StrataStage;
+import net.thedanpage.game.world.map.terrain.SurfaceHeightmap;
+import net.thedanpage.game.world.map.terrain.TerrainGen;
+
+/**
+ * Searches through seeds in parallel for worlds that meet some criteria, such
+ * as having diamonds near spawn. Each criterion only does as much generation as
+ * it needs, and gives up on a seed as soon as it can tell it won't match.
+ * Matching seeds are printed as soon as they are found.
+ *
+ * <br>
+ * <br>
+ *
+ * Run it with the first seed to try, the number of seeds to try, and one or
+ * more criteria, which all have to match:
+ *
+ * <ul>
+ * <li><code>diamonds=&lt;distance&gt;</code>: diamond ore within a number of
+ * columns of spawn</li>
+ * <li><code>flat=&lt;distance&gt;,&lt;height difference&gt;</code>: the ground
+ * within a number of columns of spawn never rises or falls by more than a
+ * height difference</li>
+ * </ul>
+ *
+ * For example, <code>SeedSearch 1000000 9000000 flat=16,2 diamonds=32</code>
+ * tries every seven-digit seed.
+ *
+ * <br>
+ * <br>
+ *
+ * Only seven-digit seeds can be searched, since those are the only seeds the
+ * game makes worlds from. {@link Map#init(int, boolean)} pads shorter seeds
+ * out to seven digits, so typing 12 makes the world 1200000, and longer seeds
+ * typed into the game are hashed into seven digits.
+ *
+ * @author Dan
+ *
+ */
+public class SeedSearch {
+
+	/** The X coordinate the player starts at in a new world */
+	public static final int SPAWN_X = Map.MAP_SIZE_CHUNKS * Chunk.CHUNK_WIDTH / 2;
+
+	/** The lowest and highest seeds the game makes worlds from */
+	public static final int MIN_SEED = 1000000, MAX_SEED = 9999999;
+
+	/** The number of seeds a thread claims at once, so threads don't fight over the counter */
+	private static final int SEEDS_PER_CLAIM = 256;
+
+	/** Something a world has to have for its seed to be a match */
+	public interface Criterion {
+
+		/**
+		 * Returns whether a world meets the criterion. Every criterion is given the
+		 * same generator for a seed.
+		 */
+		public boolean matches(TerrainGen terrainGen);
+
+	}
+
+	/**
+	 * Matches worlds whose ground stays within a height difference near spawn. It
+	 * only reads the heightmap, without running any stages.
+	 */
+	public static class FlatSurface implements Criterion {
+
+		private final int distance;
+
+		private final int maxHeightDifference;
+
+		public FlatSurface(int distance, int maxHeightDifference) {
+			this.distance = distance;
+			this.maxHeightDifference = maxHeightDifference;
+		}
+
+		@Override
+		public boolean matches(TerrainGen terrainGen) {
+			SurfaceHeightmap heightmap = terrainGen.getHeightmap();
+			int min = heightmap.getHeight(SPAWN_X);
+			int max = min;
+
+			// Work outwards from spawn, giving up as soon as the ground is too uneven
+			for (int offset = 1; offset <= distance; offset++) {
+				int left = heightmap.getHeight(SPAWN_X - offset);
+				int right = heightmap.getHeight(SPAWN_X + offset);
+				min = Math.min(min, Math.min(left, right));
+				max = Math.max(max, Math.max(left, right));
+				if (max - min > maxHeightDifference)
+					return false;
+			}
+			return true;
+		}
+
+	}
+
+	/**
+	 * Matches worlds with diamond ore near spawn. Diamonds are only ever placed
+	 * in the bottom few rows, so only those rows of the chunks near spawn are
+	 * looked at, nearest first. The stone in them is worked out from the
+	 * heightmap, and the ores are placed in just those rows, which comes out the
+	 * same as generating the whole chunk.
+	 */
+	public static class DiamondsNearSpawn implements Criterion {
+
+		/** The bottom rows of a chunk, reused by each thread for every seed */
+		private static final ThreadLocal<Block[][]> windows = ThreadLocal
+				.withInitial(() -> new Block[Chunk.CHUNK_WIDTH][OreStage.MAX_DIAMOND_HEIGHT + 1]);
+
+		/** The surface heights and then the stone tops of a chunk, reused by each thread */
+		private static final ThreadLocal<int[]> columnBuffers = ThreadLocal
+				.withInitial(() -> new int[Chunk.CHUNK_WIDTH]);
+
+		private final int distance;
+
+		public DiamondsNearSpawn(int distance) {
+			this.distance = distance;
+		}
+
+		@Override
+		public boolean matches(TerrainGen terrainGen) {
+			Block diamondOre = BlockFactory.getBlock("diamond_ore");
+			OreStage ores = terrainGen.getOreStage();
+			if (ores == null)
+				return false;
+
+			Block[][] window = windows.get();
+			int[] stoneTops = columnBuffers.get();
+			int spawnChunk = Math.floorDiv(SPAWN_X, Chunk.CHUNK_WIDTH);
+			int chunkDistance = Math.floorDiv(distance, Chunk.CHUNK_WIDTH) + 1;
+
+			// Check the spawn chunk, then the ones either side of it, moving outwards
+			for (int i = 0; i <= 2 * chunkDistance; i++) {
+				int chunk = spawnChunk + (i % 2 == 0 ? i / 2 : -(i + 1) / 2);
+				int x0 = chunk * Chunk.CHUNK_WIDTH;
+
+				terrainGen.getHeightmap().getHeights(stoneTops, 0, x0, Chunk.CHUNK_WIDTH);
+				for (int x = 0; x < Chunk.CHUNK_WIDTH; x++) {
+					stoneTops[x] = StrataStage.getStoneTop(stoneTops[x]);
+					Arrays.fill(window[x], null);
+				}
+				ores.generateOres(x0, stoneTops, OreStage.MAX_DIAMOND_HEIGHT, window);
+
+				for (int x = 0; x < Chunk.CHUNK_WIDTH; x++) {
+					if (Math.abs(x0 + x - SPAWN_X) > distance)
+						continue;
+					for (int y = 0; y <= OreStage.MAX_DIAMOND_HEIGHT; y++) {
+						if (window[x][y] == diamondOre)
+							return true;
+					}
+				}
+			}
+			return false;
+		}
+
+	}
+
+	public static void main(String[] args) throws InterruptedException {
+		if (args.length < 3) {
+			System.out.println("Usage: SeedSearch <first seed> <number of seeds> <criterion>...");
+			System.out.println("Criteria: diamonds=<distance>, flat=<distance>,<height difference>");
+			return;
+		}
+
+		long firstSeed = Long.parseLong(args[0]);
+		long numSeeds = Long.parseLong(args[1]);
+		if (firstSeed < MIN_SEED || firstSeed > MAX_SEED || numSeeds < 1 || numSeeds > MAX_SEED - firstSeed + 1) {
+			System.out.println("Seeds have to be from " + MIN_SEED + " to " + MAX_SEED
+					+ ", since the game pads shorter seeds out to seven digits");
+			return;
+		}
+		List<Criterion> criteria = new ArrayList<Criterion>();
+		for (int i = 2; i < args.length; i++) {
+			Criterion criterion = parseCriterion(args[i]);
+			if (criterion == null) {
+				System.out.println("Unknown criterion: " + args[i]);
+				return;
+			}
+			criteria.add(criterion);
+		}
+
+		// Try the cheapest criteria first, so that most seeds are rejected by them
+		criteria.sort((a, b) -> Boolean.compare(a instanceof DiamondsNearSpawn, b instanceof DiamondsNearSpawn));
+
+		Util.init();
+		Blocks.loadProperties();
+
+		int numThreads = Runtime.getRuntime().availableProcessors();
+		System.out.println("Searching " + numSeeds + " seeds from " + firstSeed + " on " + numThreads + " threads");
+
+		long start = System.nanoTime();
+		AtomicLong matches = new AtomicLong();
+		AtomicLong checked = new AtomicLong();
+		AtomicInteger nextClaim = new AtomicInteger();
+		long numClaims = (numSeeds + SEEDS_PER_CLAIM - 1) / SEEDS_PER_CLAIM;
+
+		Runnable worker = () -> {
+			// Each thread reuses one generator, reseeding it for every seed
+			TerrainGen terrainGen = new TerrainGen((int) firstSeed);
+			long claim;
+			while ((claim = nextClaim.getAndIncrement()) < numClaims) {
+				long end = Math.min((claim + 1) * SEEDS_PER_CLAIM, numSeeds);
+				for (long i = claim * SEEDS_PER_CLAIM; i < end; i++) {
+					// The range was checked, so this never wraps around
+					int seed = (int) (firstSeed + i);
+					if (matchesAll(terrainGen, seed, criteria)) {
+						matches.incrementAndGet();
+						System.out.println(seed);
+					}
+				}
+				checked.addAndGet(end - claim * SEEDS_PER_CLAIM);
+			}
+		};
+
+		Thread[] threads = new Thread[numThreads];
+		for (int i = 0; i < numThreads; i++) {
+			threads[i] = new Thread(worker, "Seed search " + (i + 1));
+			threads[i].start();
+		}
+
+		// Report progress every few seconds until every thread has finished
+		for (Thread thread : threads) {
+			while (thread.isAlive()) {
+				thread.join(5000);
+				if (thread.isAlive())
+					System.err.println(checked.get() + " seeds checked, "
+							+ (long) (checked.get() / ((System.nanoTime() - start) / 1e9)) + " seeds per second");
+			}
+		}
+
+		double elapsed = (System.nanoTime() - start) / 1e9;
+		System.err.println("Checked " + numSeeds + " seeds in " + Util.formatDoubleForString(elapsed) + " s, found "
+				+ matches.get() + " matches");
+		System.err.println("Seeds per second: " + (long) (numSeeds / elapsed));
+	}
+
+	/**
+	 * Returns whether the world made from a seed meets every criterion
+	 *
+	 * @param terrainGen the calling thread's generator, which is reseeded
+	 */
+	private static boolean matchesAll(TerrainGen terrainGen, int seed, List<Criterion> criteria) {
+		terrainGen.reseed(seed);
+		for (Criterion criterion : criteria) {
+			if (!criterion.matches(terrainGen))
+				return false;
+		}
+		return true;
+	}
+
+	/** Returns the criterion described by a command line argument, or null if it isn't one */
+	private static Criterion parseCriterion(String arg) {
+		String[] parts = arg.split("=", 2);
+		if (parts.length < 2)
+			return null;
+		String[] values = parts[1].split(",");
+
+		try {
+			if (parts[0].equals("diamonds") && values.length == 1)
+				return new DiamondsNearSpawn(Integer.parseInt(values[0]));
+			if (parts[0].equals("flat") && values.length == 2)
+				return new FlatSurface(Integer.parseInt(values[0]), Integer.parseInt(values[1]));
+		} catch (NumberFormatException e) {
+			return null;
+		}
+		return null;
+	}
+
+}
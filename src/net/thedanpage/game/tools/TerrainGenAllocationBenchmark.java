@@ -0,0 +1,51 @@
+package net.thedanpage.game.tools;
+
+import java.lang.management.ManagementFactory;
+
+import net.thedanpage.game.framework.Util;
+import net.thedanpage.game.world.map.Chunk;
+import net.thedanpage.game.world.map.Map;
+import net.thedanpage.game.world.map.block.Blocks;
+import net.thedanpage.game.world.map.terrain.TerrainGen;
+
+/**
+ * Measures how many bytes {@link TerrainGen#generateChunk(int)} allocates
+ * for each chunk it generates, using the allocation counter of the current
+ * thread. Run it with an optional seed as the first argument.
+ *
+ * @author Dan
+ *
+ */
+public class TerrainGenAllocationBenchmark {
+
+	public static void main(String[] args) {
+		int seed = args.length > 0 ? Integer.parseInt(args[0]) : 1234567;
+
+		Util.init();
+		Blocks.loadProperties();
+
+		com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory
+				.getThreadMXBean();
+		long threadId = Thread.currentThread().getId();
+
+		// Warm up so that class loading and compilation aren't counted
+		generateWorld(seed);
+
+		long before = threads.getThreadAllocatedBytes(threadId);
+		generateWorld(seed);
+		long after = threads.getThreadAllocatedBytes(threadId);
+
+		long bytesPerChunk = (after - before) / Map.MAP_SIZE_CHUNKS;
+		System.out.println("Seed: " + seed + ", chunks: " + Map.MAP_SIZE_CHUNKS);
+		System.out.println("Allocated per chunk: " + bytesPerChunk + " bytes");
+		System.out.println("Allocated per cell:  "
+				+ Util.formatDoubleForString((double) bytesPerChunk / (Chunk.CHUNK_WIDTH * Map.MAP_HEIGHT)) + " bytes");
+	}
+
+	private static void generateWorld(int seed) {
+		TerrainGen terrainGen = new TerrainGen(seed);
+		for (int i = 0; i < Map.MAP_SIZE_CHUNKS; i++)
+			terrainGen.generateChunk(i * Chunk.CHUNK_WIDTH);
+	}
+
+}
@@ -0,0 +1,69 @@
+package net.thedanpage.game.tools;
+
+import net.thedanpage.game.framework.Util;
+import net.thedanpage.game.world.map.Chunk;
+import net.thedanpage.game.world.map.Map;
+import net.thedanpage.game.world.map.block.Blocks;
+import net.thedanpage.game.world.map.terrain.TerrainGen;
+
+/**
+ * Measures how long {@link TerrainGen#generateChunk(int)} takes per chunk, on a
+ * single thread, and how much of that each stage takes. Run it with an optional
+ * seed as the first argument, followed by the names of any stages to turn off.
+ *
+ * @author Dan
+ *
+ */
+public class TerrainGenBenchmark {
+
+	private static final int WARMUP_RUNS = 50;
+
+	private static final int RUNS = 50;
+
+	public static void main(String[] args) {
+		int seed = args.length > 0 ? Integer.parseInt(args[0]) : 1234567;
+
+		Util.init();
+		Blocks.loadProperties();
+
+		TerrainGen terrainGen = new TerrainGen(seed);
+		for (int i = 1; i < args.length; i++) {
+			int stage = terrainGen.getStageIndex(args[i]);
+			if (stage < 0) {
+				System.err.println("Unknown stage: " + args[i]);
+				return;
+			}
+			terrainGen.setStageEnabled(stage, false);
+		}
+
+		// Warm up so that compilation isn't counted
+		for (int i = 0; i < WARMUP_RUNS; i++)
+			generateWorld(terrainGen);
+		terrainGen.resetStageTimings();
+
+		long start = System.nanoTime();
+		for (int i = 0; i < RUNS; i++)
+			generateWorld(terrainGen);
+		long elapsed = System.nanoTime() - start;
+
+		double chunks = (double) RUNS * Map.MAP_SIZE_CHUNKS;
+		System.out.println("Seed: " + seed + ", chunks: " + (long) chunks);
+		System.out.println("Time per chunk: " + Util.formatDoubleForString(elapsed / chunks / 1000.0) + " us");
+		System.out.println("Chunks per second: " + (long) (chunks / (elapsed / 1e9)));
+
+		for (int i = 0; i < terrainGen.getStageCount(); i++) {
+			String name = terrainGen.getStage(i).getName();
+			if (terrainGen.isStageEnabled(i))
+				System.out.println("  " + name + ": "
+						+ Util.formatDoubleForString(terrainGen.getStageNanosPerChunk(i) / 1000.0) + " us");
+			else
+				System.out.println("  " + name + ": off");
+		}
+	}
+
+	private static void generateWorld(TerrainGen terrainGen) {
+		for (int i = 0; i < Map.MAP_SIZE_CHUNKS; i++)
+			terrainGen.generateChunk(i * Chunk.CHUNK_WIDTH);
+	}
+
+}
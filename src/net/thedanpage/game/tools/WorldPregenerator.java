@@ -0,0 +1,171 @@
+package net.thedanpage.game.tools;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import net.thedanpage.game.framework.Util;
+import net.thedanpage.game.graphics.Textures;
+import net.thedanpage.game.world.map.Chunk;
+import net.thedanpage.game.world.map.Map;
+import net.thedanpage.game.world.map.block.Blocks;
+import net.thedanpage.game.world.map.filesystem.SaveSystem;
+import net.thedanpage.game.world.map.terrain.TerrainGen;
+
+/**
+ * Generates every chunk of a world without opening the game window, and writes
+ * it to a save file that can be loaded in the game. The chunks are generated
+ * in parallel on every core.
+ *
+ * <br>
+ * <br>
+ *
+ * Run it with a seed, the first and last chunk indices to generate, the file
+ * to save to, and optionally the number of threads to use. Adding
+ * <code>--scaling</code> at the end also times the same chunks with 1, 2, 4...
+ * threads first, to show how well generation scales with cores.
+ *
+ * <br>
+ * <br>
+ *
+ * The chunks have to be from 0 to {@link Map#MAP_SIZE_CHUNKS} - 1, so only
+ * bounded worlds can be pregenerated. An unbounded world only keeps the chunks
+ * near the player, and would throw the rest away as soon as it was played.
+ *
+ * @author Dan
+ *
+ */
+public class WorldPregenerator {
+
+	/** The number of chunks a thread claims at once, so threads don't fight over the counter */
+	private static final int CHUNKS_PER_CLAIM = 16;
+
+	public static void main(String[] args) throws IOException, InterruptedException {
+		if (args.length < 4) {
+			System.out.println("Usage: WorldPregenerator <seed> <first chunk> <last chunk> <save file> [threads] [--scaling]");
+			return;
+		}
+
+		int seed = Integer.parseInt(args[0]);
+		int firstChunk = Integer.parseInt(args[1]);
+		int lastChunk = Integer.parseInt(args[2]);
+		File saveFile = new File(args[3].endsWith(".gam") ? args[3] : args[3] + ".gam");
+		int cores = Runtime.getRuntime().availableProcessors();
+		int threads = args.length > 4 && !args[4].equals("--scaling") ? Integer.parseInt(args[4]) : cores;
+		boolean scaling = args[args.length - 1].equals("--scaling");
+
+		if (seed <= 0) {
+			System.out.println("The seed has to be positive");
+			return;
+		}
+		if (lastChunk < firstChunk) {
+			System.out.println("The last chunk can't be before the first chunk");
+			return;
+		}
+		if (firstChunk < 0 || lastChunk >= Map.MAP_SIZE_CHUNKS) {
+			System.out.println("Chunks have to be from 0 to " + (Map.MAP_SIZE_CHUNKS - 1)
+					+ ", since unbounded worlds don't keep chunks far from the player");
+			return;
+		}
+
+		// Nothing is drawn, so don't let AWT look for a display
+		System.setProperty("java.awt.headless", "true");
+		Util.init();
+		Blocks.loadProperties();
+		Textures.init();
+
+		Map map = new Map();
+		map.init(seed, false);
+		TerrainGen terrainGen = map.getTerrainGen();
+		int numChunks = lastChunk - firstChunk + 1;
+
+		System.out.println("Seed: " + terrainGen.getSeed() + ", chunks " + firstChunk + " to " + lastChunk + " ("
+				+ numChunks + ")");
+
+		if (scaling)
+			printScaling(terrainGen, firstChunk, numChunks, threads);
+
+		// The real run, whose chunks are saved
+		long start = System.nanoTime();
+		Chunk[] chunks = generateChunks(terrainGen, firstChunk, numChunks, threads);
+		long elapsed = System.nanoTime() - start;
+
+		map.putChunks(Arrays.asList(chunks));
+
+		System.out.println("Generated with " + threads + " threads in "
+				+ Util.formatDoubleForString(elapsed / 1e9) + " s");
+		System.out.println("Chunks per second: " + (long) (numChunks / (elapsed / 1e9)));
+		System.out.println("Chunks per second per thread: " + (long) (numChunks / (elapsed / 1e9) / threads));
+
+		SaveSystem.saveWorldToFile(map, saveFile);
+		System.out.println("Saved to " + saveFile.getPath() + " (" + saveFile.length() / 1024 + " KB)");
+	}
+
+	/**
+	 * Generates the same chunks with 1, 2, 4... threads, up to the number being
+	 * used for the real run, and prints how much faster each one is than a
+	 * single thread
+	 */
+	private static void printScaling(TerrainGen terrainGen, int firstChunk, int numChunks, int maxThreads)
+			throws InterruptedException {
+		// Warm up so that compilation isn't counted against the single thread
+		generateChunks(terrainGen, firstChunk, numChunks, maxThreads);
+
+		System.out.println("Scaling:");
+		double singleThreadRate = 0;
+		int threads = 1;
+		while (true) {
+			long start = System.nanoTime();
+			generateChunks(terrainGen, firstChunk, numChunks, threads);
+			double rate = numChunks / ((System.nanoTime() - start) / 1e9);
+			if (threads == 1)
+				singleThreadRate = rate;
+
+			double speedup = rate / singleThreadRate;
+			System.out.println("  " + threads + " threads: " + (long) rate + " chunks/s, "
+					+ Util.formatDoubleForString(speedup) + "x speedup, "
+					+ Util.formatDoubleForString(speedup / threads * 100) + "% efficiency");
+
+			if (threads == maxThreads)
+				break;
+			threads = Math.min(threads * 2, maxThreads);
+		}
+	}
+
+	/**
+	 * Generates a run of chunks on a number of threads, which each keep claiming
+	 * the next few chunks until there are none left
+	 *
+	 * @return the chunks, in order
+	 */
+	private static Chunk[] generateChunks(TerrainGen terrainGen, int firstChunk, int numChunks, int numThreads)
+			throws InterruptedException {
+		Chunk[] chunks = new Chunk[numChunks];
+		AtomicInteger nextChunk = new AtomicInteger();
+
+		Runnable worker = () -> {
+			int claimed;
+			while ((claimed = nextChunk.getAndAdd(CHUNKS_PER_CLAIM)) < numChunks) {
+				int end = Math.min(claimed + CHUNKS_PER_CLAIM, numChunks);
+				for (int i = claimed; i < end; i++) {
+					Chunk chunk = new Chunk((firstChunk + i) * Chunk.CHUNK_WIDTH);
+					chunk.generate(terrainGen);
+					chunks[i] = chunk;
+				}
+			}
+		};
+
+		Thread[] threads = new Thread[numThreads];
+		for (int i = 0; i < numThreads; i++) {
+			threads[i] = new Thread(worker, "Pregenerator " + (i + 1));
+			threads[i].start();
+		}
+		// Joining also makes every thread's chunks visible to this one
+		for (Thread thread : threads)
+			thread.join();
+
+		return chunks;
+	}
+
+}
@@ -6,6 +6,7 @@ import java.io.Serializable;
 import net.thedanpage.game.Game;
 import net.thedanpage.game.graphics.AnimatedTexture;
 import net.thedanpage.game.graphics.Graphics;
+import net.thedanpage.game.graphics.Sprite;
 import net.thedanpage.game.graphics.Texture;
 import net.thedanpage.game.graphics.Textures;
 import net.thedanpage.game.world.map.Chunk;
@@ -133,68 +134,26 @@ public abstract class Entity implements Serializable {
 
 	protected void updateOnGround(Map map) {
 		onGround = false;
+		// Round down rather than toward zero, so the right blocks are checked at negative X too
+		int groundY = (int) Math.floor(getY()-0.0001);
 		for (double x=getX(); x<getX()+getWidth()+1; x++) {
 			if (x > getX()+getWidth()) {
 				x = getX() + getWidth();
-				if (map.getBlock((int) x, (int) (getY()-0.0001)) != null && !map.getBlock((int) x, (int) (getY()-0.0001)).isFluid())
+				if (isSolid(map.getBlock((int) Math.floor(x), groundY)))
 					onGround = true;
 				return;
 			}
-			if (map.getBlock((int) x, (int) (getY()-0.0001)) != null && !map.getBlock((int) x, (int) (getY()-0.0001)).isFluid())
+			if (isSolid(map.getBlock((int) Math.floor(x), groundY)))
 				onGround = true;
 		}
 	}
 
-	public void update(Map map) {
+	/** Returns whether a block can be stood on */
+	private static boolean isSolid(Block block) {
+		return block != null && !block.isFluid();
 	}
 
-	/**
-	 * Returns the entity's current pixels so they can be drawn to the screen
-	 * 
-	 * @param flipHorizontal Optionally flip the texture horizontally
-	 * @param flipVertical Optionally flip the texture vertically
-	 * @return an array of RGB pixel data
-	 */
-	protected int[] getDrawPixels(boolean flipHorizontal, boolean flipVertical) {
-		int[] pixels;
-
-		if (this.sprite instanceof AnimatedTexture)
-			pixels = ((AnimatedTexture) (this.sprite)).getPixels(0);
-		else
-			pixels = this.sprite.getPixels();
-
-		if (flipHorizontal)
-			pixels = Graphics.flipHorizontal(this.getTexture().getWidth(), this.getTexture().getHeight(), pixels);
-		if (flipVertical)
-			pixels = Graphics.flipVertical(this.getTexture().getWidth(), this.getTexture().getHeight(), pixels);
-
-		return pixels;
-	}
-
-	/**
-	 * Returns the entity's current pixels so they can be drawn to the screen
-	 * 
-	 * @param frame desired frame of the animated texture
-	 * @param flipHorizontal Optionally flip the texture horizontally
-	 * @param flipVertical Optionally flip the texture vertically
-	 * @return an array of RGB pixel data
-	 */
-	protected int[] getDrawPixels(int frame, boolean flipHorizontal, boolean flipVertical) throws Exception {
-		int[] pixels;
-
-		if (this.sprite instanceof AnimatedTexture) {
-			pixels = ((AnimatedTexture) this.sprite).getPixels(frame);
-
-			if (flipHorizontal)
-				pixels = Graphics.flipHorizontal(((AnimatedTexture) this.getTexture()).getWidth(frame),
-						((AnimatedTexture) this.getTexture()).getHeight(frame), pixels);
-			if (flipVertical)
-				pixels = Graphics.flipVertical(((AnimatedTexture) this.getTexture()).getWidth(frame),
-						((AnimatedTexture) this.getTexture()).getHeight(frame), pixels);
-		} else
-			throw new Exception("This entity does not have an animated sprite");
-
-		return pixels;
+	public void update(Map map) {
 	}
 
 	/**
@@ -212,20 +171,18 @@ public abstract class Entity implements Serializable {
 	 */
 	public void draw(boolean showHitbox) throws Exception {
 		try {
-			if (this.facing == FACING_LEFT)
-				Graphics.drawImage((int) (this.getX() * Block.BLOCK_SIZE) - this.getTexture().getWidth() / 2,
+			// Use the texture's sprites, so that it isn't flipped every time it is drawn
+			Sprite sprite = this.facing == FACING_LEFT ? this.getTexture().getSprite()
+					: this.getTexture().getFlippedSprite();
+			if (sprite != null)
+				Graphics.drawSprite((int) (this.getX() * Block.BLOCK_SIZE) - this.getTexture().getWidth() / 2,
 						Game.screen.getHeight() - (int) (this.getY() * Block.BLOCK_SIZE)
 								- this.getTexture().getHeight(),
-						this.getTexture().getWidth(), this.getTexture().getHeight(), this.getDrawPixels(false, false));
-			else
-				Graphics.drawImage((int) (this.getX() * Block.BLOCK_SIZE) - this.getTexture().getWidth() / 2,
-						Game.screen.getHeight() - (int) (this.getY() * Block.BLOCK_SIZE)
-								- this.getTexture().getHeight(),
-						this.getTexture().getWidth(), this.getTexture().getHeight(), this.getDrawPixels(true, false));
+						sprite);
 		} catch (Exception e) {
 			e.printStackTrace();
 		}
-		if (showHitbox) Graphics.drawRectangle(getBounds(), 0x00ffff, true);
+		if (showHitbox) drawHitbox();
 	}
 
 	/**
@@ -237,29 +194,26 @@ public abstract class Entity implements Serializable {
 	 */
 	public void draw(int frame, boolean showHitbox) throws Exception {
 		try {
-			try {
-				if (!(this.sprite instanceof AnimatedTexture))
-					throw new Exception("This entity does not have an animated sprite");
-
-				if (this.facing == FACING_LEFT)
-					Graphics.drawImage((int) (this.getX()),
-							Game.screen.getHeight() - (int) (this.getY() * Block.BLOCK_SIZE)
-									- this.getTexture().getHeight(),
-							this.getTexture().getWidth(), this.getTexture().getHeight(),
-							this.getDrawPixels(frame, false, false));
-				else
-					Graphics.drawImage((int) (this.getX()),
-							Game.screen.getHeight() - (int) (this.getY() * Block.BLOCK_SIZE)
-									- this.getTexture().getHeight(),
-							this.getTexture().getWidth(), this.getTexture().getHeight(),
-							this.getDrawPixels(frame, true, false));
-			} catch (Exception e) {
-				e.printStackTrace();
-			}
+			if (!(this.sprite instanceof AnimatedTexture))
+				throw new Exception("This entity does not have an animated sprite");
+
+			// Use the frame's sprites, so that it isn't flipped every time it is drawn.
+			// An animated texture has no size of its own, so the frame's is used.
+			AnimatedTexture texture = (AnimatedTexture) this.sprite;
+			Sprite sprite = this.facing == FACING_LEFT ? texture.getSprite(frame) : texture.getFlippedSprite(frame);
+			if (sprite != null)
+				Graphics.drawSprite((int) (this.getX() * Block.BLOCK_SIZE) - sprite.getWidth() / 2,
+						Game.screen.getHeight() - (int) (this.getY() * Block.BLOCK_SIZE) - sprite.getHeight(),
+						sprite);
 		} catch (Exception e) {
 			e.printStackTrace();
 		}
-		if (showHitbox) Graphics.drawRectangle(getBounds(), 0x00ffff, true);
+		if (showHitbox) drawHitbox();
+	}
+
+	/** Draws an outline of the entity's hitbox */
+	protected void drawHitbox() {
+		Graphics.drawRectangle(this.getX(), this.getY(), this.getWidth(), this.getHeight(), 0x00ffff, true);
 	}
 
 	/** Processes collision of the entity with the world bounds */
@@ -271,16 +225,20 @@ public abstract class Entity implements Serializable {
 			this.setVelocityY(0);
 		}
 		
-		// Left world bound
-		if (this.getX() < 0) {
-			this.setX(0);
-			this.setVelocityX(0);
-		}
-		
-		// Right world bound
-		if (this.getX() + this.getWidth()/Block.BLOCK_SIZE/2 > Map.MAP_SIZE_CHUNKS*Chunk.CHUNK_WIDTH - 2) {
-			this.setX(Map.MAP_SIZE_CHUNKS*Chunk.CHUNK_WIDTH - this.getWidth()/Block.BLOCK_SIZE/2 - 2);
-			this.setVelocityX(0);
+		// Unbounded worlds have no left or right bound
+		if (!map.isUnbounded()) {
+			
+			// Left world bound
+			if (this.getX() < 0) {
+				this.setX(0);
+				this.setVelocityX(0);
+			}
+			
+			// Right world bound
+			if (this.getX() + this.getWidth()/Block.BLOCK_SIZE/2 > Map.MAP_SIZE_CHUNKS*Chunk.CHUNK_WIDTH - 2) {
+				this.setX(Map.MAP_SIZE_CHUNKS*Chunk.CHUNK_WIDTH - this.getWidth()/Block.BLOCK_SIZE/2 - 2);
+				this.setVelocityX(0);
+			}
 		}
 		
 		CollideBlocks.collideBlocks(map, this);
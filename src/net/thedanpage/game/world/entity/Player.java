@@ -5,6 +5,7 @@ import net.thedanpage.game.framework.Sounds;
 import net.thedanpage.game.framework.gamestate.WorldState;
 import net.thedanpage.game.graphics.AnimatedTexture;
 import net.thedanpage.game.graphics.Graphics;
+import net.thedanpage.game.graphics.Sprite;
 import net.thedanpage.game.world.map.Map;
 import net.thedanpage.game.world.map.block.Block;
 import net.thedanpage.game.world.physics.PhysicsConstants;
@@ -31,6 +32,9 @@ public class Player extends Entity {
 	/** Controls whether the player is flying or not */
 	private boolean flying = false;
 
+	/** The sprite the player was last drawn with, lit, which is reused every frame */
+	private transient Sprite litSprite;
+
 	public Player() {
 		super("player");
 	}
@@ -119,28 +123,40 @@ public class Player extends Entity {
 	/** Draw the player on the screen */
 	public void draw(boolean showHitbox) {
 		try {
+			int frame = animationCounter / 4;
+			Sprite sprite;
 			if (this.getFacing() == FACING_LEFT)
-				Graphics.drawImage((int) (this.getX() * Block.BLOCK_SIZE) + Game.screen.getScreenOffsetX(),
-						Game.screen.getHeight() - (int) (this.getY() * Block.BLOCK_SIZE)
-								- this.getTexture().getHeight(animationCounter / 4) + Game.screen.getScreenOffsetY(),
-						this.getTexture().getWidth(animationCounter / 4),
-						this.getTexture().getHeight(animationCounter / 4),
-						Graphics.applyLighting(this.getDrawPixels(animationCounter / 4, false, false),
-								(float) WorldState.getMap().getLightLevel((int) getX(), (int) getY())));
+				sprite = this.getTexture().getSprite(frame);
 			else if (this.getFacing() == FACING_RIGHT)
-				Graphics.drawImage((int) (this.getX() * Block.BLOCK_SIZE) + Game.screen.getScreenOffsetX(),
-						Game.screen.getHeight() - (int) (this.getY() * Block.BLOCK_SIZE)
-								- this.getTexture().getHeight(animationCounter / 4) + Game.screen.getScreenOffsetY(),
-						this.getTexture().getWidth(animationCounter / 4),
-						this.getTexture().getHeight(animationCounter / 4),
-						Graphics.applyLighting(this.getDrawPixels(animationCounter / 4, true, false),
-								(float) WorldState.getMap().getLightLevel((int) getX(), (int) getY())));
+				sprite = this.getTexture().getFlippedSprite(frame);
+			else
+				sprite = null;
+
+			if (sprite != null)
+				Graphics.drawSprite((int) (this.getX() * Block.BLOCK_SIZE) + Game.screen.getScreenOffsetX(),
+						Game.screen.getHeight() - (int) (this.getY() * Block.BLOCK_SIZE) - sprite.getHeight()
+								+ Game.screen.getScreenOffsetY(),
+						light(sprite, WorldState.getMap().getLightLevel((int) getX(), (int) getY())));
 		} catch (Exception e) {
 			e.printStackTrace();
 		}
 
 		if (showHitbox)
-			Graphics.drawRectangle(this.getBounds(), 0x00ffff, true);
+			drawHitbox();
+	}
+
+	/**
+	 * Applies lighting to one of the player's sprites, writing it into
+	 * {@link #litSprite} so that nothing new is made each frame
+	 */
+	private Sprite light(Sprite sprite, int lightLevel) {
+		if (litSprite == null || litSprite.getWidth() != sprite.getWidth()
+				|| litSprite.getHeight() != sprite.getHeight())
+			litSprite = new Sprite(new int[sprite.getPixels().length], sprite.getWidth(), sprite.getHeight());
+
+		Graphics.applyLighting(sprite.getPixels(), lightLevel, litSprite.getPixels());
+		litSprite.updateSpans();
+		return litSprite;
 	}
 
 	public boolean getFlying() {
@@ -0,0 +1,113 @@
+package net.thedanpage.game.world.map;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+import net.thedanpage.game.Game;
+
+/**
+ * Draws the sky and the chunks of a {@link Map} on several threads at once, by
+ * splitting the screen into horizontal bands, one for each thread. Each band
+ * only draws onto its own rows of the screen, so the threads never write to the
+ * same pixels, and {@link #render(Map)} waits until every band is finished.
+ *
+ * <br>
+ * <br>
+ *
+ * The chunks are drawn from their {@link ChunkTileCache} tiles, which have to be
+ * brought up to date on the game thread first, since only drawing them is safe
+ * to do from several threads. The tasks for the bands are reused every frame.
+ *
+ * @author Dan
+ *
+ */
+public class BandedRenderer {
+
+	/** One band of the screen, which draws the rows from top up to bottom */
+	private static class Band extends RecursiveAction {
+
+		private static final long serialVersionUID = 2947810356417389615L;
+
+		private final BandedRenderer renderer;
+
+		private int top, bottom;
+
+		Band(BandedRenderer renderer) {
+			this.renderer = renderer;
+		}
+
+		@Override
+		protected void compute() {
+			renderer.map.renderBand(top, bottom);
+		}
+
+	}
+
+	/** Starts every band, and waits for all of them to finish */
+	private static class AllBands extends RecursiveAction {
+
+		private static final long serialVersionUID = -6290435312847652183L;
+
+		private final Band[] bands;
+
+		AllBands(Band[] bands) {
+			this.bands = bands;
+		}
+
+		@Override
+		protected void compute() {
+			ForkJoinTask.invokeAll(bands);
+		}
+
+	}
+
+	private final ForkJoinPool pool;
+
+	private final Band[] bands;
+
+	private final AllBands allBands;
+
+	/** The map being drawn */
+	private Map map;
+
+	/**
+	 * @param threads the number of threads to draw with, which is also the number
+	 *                of bands the screen is split into
+	 */
+	public BandedRenderer(int threads) {
+		this.pool = new ForkJoinPool(Math.max(1, threads));
+		this.bands = new Band[Math.max(1, threads)];
+		for (int i = 0; i < bands.length; i++)
+			bands[i] = new Band(this);
+		this.allBands = new AllBands(bands);
+	}
+
+	/**
+	 * Draws every band of the screen with {@link Map#renderBand(int, int)}, and
+	 * waits for all of them to finish
+	 */
+	public void render(Map map) {
+		this.map = map;
+		int height = Game.screen.getHeight();
+		for (int i = 0; i < bands.length; i++) {
+			bands[i].top = height * i / bands.length;
+			bands[i].bottom = height * (i + 1) / bands.length;
+			bands[i].reinitialize();
+		}
+		allBands.reinitialize();
+		pool.invoke(allBands);
+		this.map = null;
+	}
+
+	/** Returns the number of threads the screen is drawn with */
+	public int getThreads() {
+		return bands.length;
+	}
+
+	/** Stops the threads once they have finished what they are drawing */
+	public void shutdown() {
+		pool.shutdown();
+	}
+
+}
@@ -1,12 +1,12 @@
 package net.thedanpage.game.world.map;
 
-import java.awt.geom.Rectangle2D;
+import java.awt.Point;
 import java.io.Serializable;
+import java.util.Arrays;
 
 import net.thedanpage.game.Game;
 import net.thedanpage.game.graphics.Graphics;
 import net.thedanpage.game.world.map.block.Block;
-import net.thedanpage.game.world.map.block.Blocks;
 import net.thedanpage.game.world.map.terrain.TerrainGen;
 
 /**
@@ -16,20 +16,66 @@ import net.thedanpage.game.world.map.terrain.TerrainGen;
  * they are on the screen. This is a much more efficient way to do updates and
  * rending rather than interacting with every block every game update.
  * 
+ * <br>
+ * <br>
+ * 
+ * Each chunk is split into {@link #NUM_SECTIONS} {@link ChunkSection}s stacked
+ * on top of each other. Sections that are all air are shared, and are skipped
+ * when updating, rendering and lighting the chunk.
+ * 
  * @author Dan
  */
 public class Chunk implements Serializable {
 
-	private static final long serialVersionUID = 6482501415662803473L;
+	private static final long serialVersionUID = 5182566278188489250L;
 
 	/** The width of the chunk, in blocks */
 	public static final int CHUNK_WIDTH = 8;
 
-	/** A 2D array containing every block in the chunk */
-	private Block[][] blocks = new Block[CHUNK_WIDTH][Map.MAP_HEIGHT];
+	/** The color drawn in place of a chunk that is still being generated */
+	public static final int PLACEHOLDER_COLOR = 0x202020;
+
+	/** The number of sections stacked on top of each other in a chunk */
+	public static final int NUM_SECTIONS = Map.MAP_HEIGHT / ChunkSection.SECTION_HEIGHT;
+
+	/** The light of a cell that is open to the sky, with no light from blocks */
+	private static final byte SKY_LIT_CELL = (byte) LightEngine.MAX_LIGHT_LEVEL;
+
+	/**
+	 * The vertical sections of the chunk, from the bottom of the map up. Sections
+	 * that are all air, or all one block, are shared between every chunk.
+	 */
+	private ChunkSection[] sections = new ChunkSection[NUM_SECTIONS];
+
+	/**
+	 * The light of each cell, with the sky light in the low four bits and the
+	 * light from blocks in the high four bits, each from 0 to
+	 * {@link LightEngine#MAX_LIGHT_LEVEL}. Cells are stored a row at a time from
+	 * the bottom of the map up, and only as far up as there is light from blocks,
+	 * or up to the top of {@link #topSection}, since everything above that is
+	 * open sky. The array grows a section at a time when more is needed.
+	 */
+	private byte[] lightLevels;
 
-	/** A 2D array containing light levels for the chunk */
-	private float[][] lightLevels = new float[CHUNK_WIDTH][Map.MAP_HEIGHT];
+	/**
+	 * Counts up every time a block or light level in a section changes, so that a
+	 * {@link ChunkTileCache} can tell when its picture of the section is out of
+	 * date. It isn't saved, and is created again when it is first needed.
+	 */
+	private transient int[] sectionVersions;
+
+	/** The index of the highest section that isn't all air, or -1 if there isn't one */
+	private int topSection = -1;
+
+	/**
+	 * The height of the highest block in each column, or -1 if the column is
+	 * empty. It isn't saved, and is worked out again from the blocks when it is
+	 * first needed after loading.
+	 */
+	private transient short[] columnTops;
+
+	/** Whether sections copied from shared ones should be paletted */
+	private boolean paletted;
 
 	/** The leftmost X coordinate of the chunk */
 	private int x;
@@ -37,27 +83,64 @@ public class Chunk implements Serializable {
 	/** Whether the chunk's blocks have been generated or not */
 	private boolean generated = false;
 
+	/** Whether the player has changed any of the chunk's blocks since it was generated */
+	private boolean edited = false;
+
 	public Chunk(int x0) {
+		this(x0, Map.PALETTED_CHUNKS);
+	}
+
+	/**
+	 * @param x0       the leftmost X coordinate of the chunk
+	 * @param paletted whether the blocks should be kept in a
+	 *                 {@link PalettedBlockStorage}
+	 */
+	public Chunk(int x0, boolean paletted) {
 		this.x = x0;
+		this.paletted = paletted;
 
-		for (int x = 0; x < lightLevels.length; x++) {
-			for (int y = 0; y < lightLevels[0].length; y++) {
-				lightLevels[x][y] = 0;
-			}
-		}
+		for (int i = 0; i < NUM_SECTIONS; i++)
+			sections[i] = ChunkSection.EMPTY;
+
+		columnTops = new short[CHUNK_WIDTH];
+		Arrays.fill(columnTops, (short) -1);
 	}
 
 	public int getX() {
 		return this.x;
 	}
 
+	/** Returns a copy of every block in the chunk, indexed by <code>[x][y]</code> */
 	public Block[][] getBlocks() {
-		return this.blocks;
+		Block[][] copy = new Block[CHUNK_WIDTH][Map.MAP_HEIGHT];
+		for (int x = 0; x < CHUNK_WIDTH; x++)
+			for (int y = 0; y < Map.MAP_HEIGHT; y++)
+				copy[x][y] = getBlock(this.x + x, y);
+		return copy;
+	}
+
+	/** Returns the section at a given index, counting up from the bottom of the map */
+	public ChunkSection getSection(int index) {
+		return sections[index];
 	}
 
-	/** Generate the terrain */
-	public void generate(int seed) {
-		this.blocks = TerrainGen.generateChunk(this.x, seed);
+	/** Returns the index of the highest section that isn't all air, or -1 if there isn't one */
+	public int getTopSection() {
+		return topSection;
+	}
+
+	/** Generate the terrain, using the world's terrain generator */
+	public void generate(TerrainGen terrainGen) {
+		Block[][] generatedBlocks = terrainGen.generateChunk(this.x);
+
+		for (int x = 0; x < CHUNK_WIDTH; x++)
+			for (int y = 0; y < Map.MAP_HEIGHT; y++)
+				setBlock(generatedBlocks[x][y], this.x + x, y);
+
+		// Swap sections that ended up as a single block, like solid stone, for shared ones
+		for (int i = 0; i < NUM_SECTIONS; i++)
+			sections[i] = sections[i].compact();
+
 		this.generated = true;
 	}
 
@@ -65,29 +148,75 @@ public class Chunk implements Serializable {
 		return this.generated;
 	}
 
+	public boolean isEdited() {
+		return this.edited;
+	}
+
+	public void setEdited(boolean edited) {
+		this.edited = edited;
+	}
+
+	/** Returns the index of a cell within its section */
+	private int cellIndex(int x, int y) {
+		return (x - this.x) * ChunkSection.SECTION_HEIGHT + y % ChunkSection.SECTION_HEIGHT;
+	}
+
 	/**
 	 * Returns a block at a given coordinate in the world, without having to go
 	 * through chunks
 	 */
 	public Block getBlock(int x, int y) {
-		return blocks[x % CHUNK_WIDTH][y];
+		return sections[y / ChunkSection.SECTION_HEIGHT].getBlock(cellIndex(x, y));
 	}
 
 	/** Sets the block at a specified coordinate */
 	public void setBlock(Block block, int x, int y) {
-		blocks[x % CHUNK_WIDTH][y] = block;
+		int section = y / ChunkSection.SECTION_HEIGHT;
+		sections[section] = sections[section].setBlock(cellIndex(x, y), block, paletted);
+		getSectionVersions()[section]++;
+
+		if (block != null && section > topSection) {
+			// The sections that are now below the top were open sky, so they start fully lit
+			int oldTopSection = topSection;
+			topSection = section;
+			if (generated) {
+				byte[] levels = getLightLevels(section);
+				for (int i = (oldTopSection + 1) * ChunkSection.SIZE; i < (section + 1) * ChunkSection.SIZE; i++)
+					levels[i] |= SKY_LIT_CELL;
+				for (int i = oldTopSection + 1; i < section; i++)
+					getSectionVersions()[i]++;
+			}
+		}
+		else if (block == null && section == topSection) {
+			while (topSection >= 0 && sections[topSection].isEmpty())
+				topSection--;
+		}
+
+		// Placing a block above the top of a column just raises it. Only removing the
+		// top block means looking down for the next one, which is usually right below.
+		short[] tops = getColumnTops();
+		int xInChunk = x - this.x;
+		if (block != null && y > tops[xInChunk])
+			tops[xInChunk] = (short) y;
+		else if (block == null && y == tops[xInChunk])
+			tops[xInChunk] = (short) findColumnTop(xInChunk, y - 1);
 	}
 
 	/** Updates all blocks in the chunk */
 	public void update(Map map) {
-		for (Block[] i : blocks) {
-			for (Block block : i) {
+		for (int x = 0; x < CHUNK_WIDTH; x++) {
+			for (int y = 0; y < Map.MAP_HEIGHT; y++) {
+				// Skip over sections with nothing in them
+				if (sections[y / ChunkSection.SECTION_HEIGHT].isEmpty()) {
+					y += ChunkSection.SECTION_HEIGHT - 1 - y % ChunkSection.SECTION_HEIGHT;
+					continue;
+				}
+
+				Block block = getBlock(this.x + x, y);
 				if (block != null)
-					block.update(map);
+					block.update(map, this.x + x, y);
 			}
 		}
-
-		updateLighting(map);
 	}
 
 	/** Renders all blocks in the chunk */
@@ -95,87 +224,223 @@ public class Chunk implements Serializable {
 		int minRenderHeight = (Game.screen.getScreenOffsetY()) / Block.BLOCK_SIZE;
 		int maxRenderHeight = (Game.screen.getScreenOffsetY() + Game.screen.getHeight()) / Block.BLOCK_SIZE + 1;
 
-		for (int x = 0; x < blocks.length; x++) {
+		minRenderHeight = Math.max(minRenderHeight, 0);
+
+		// Cover up chunks that are still being generated, rather than waiting for them
+		if (!generated) {
+			maxRenderHeight = Math.min(maxRenderHeight, Map.MAP_HEIGHT);
+			if (maxRenderHeight > minRenderHeight)
+				Graphics.fillRectangle(this.x, minRenderHeight, CHUNK_WIDTH, maxRenderHeight - minRenderHeight,
+						PLACEHOLDER_COLOR, true);
+			return;
+		}
+
+		maxRenderHeight = Math.min(maxRenderHeight, (topSection + 1) * ChunkSection.SECTION_HEIGHT);
+
+		if (map.isRenderingWithTiles()) {
+			// Draw each section on the screen from its picture, then highlight over it
+			prepareTiles(map);
+			renderTiles(map, 0, Game.screen.getHeight());
+			renderHighlight(map);
+			return;
+		}
+
+		for (int x = 0; x < CHUNK_WIDTH; x++) {
 			for (int y = minRenderHeight; y < maxRenderHeight; y++) {
-				if (y >= 0 && y < blocks[x].length && blocks[x][y] != null)
-					blocks[x][y].draw(map);
-				if (blocks[x][y] != null && blocks[x][y].isHighlighted()) {
-					Graphics.highlightRectangleBlockCoords(new Rectangle2D.Double(this.x + x, y, 1, 1));
+				if (sections[y / ChunkSection.SECTION_HEIGHT].isEmpty()) {
+					y += ChunkSection.SECTION_HEIGHT - 1 - y % ChunkSection.SECTION_HEIGHT;
+					continue;
+				}
+
+				Block block = getBlock(this.x + x, y);
+				if (block != null)
+					block.draw(map, this.x + x, y);
+				if (block != null && map.isHighlighted(this.x + x, y)) {
+					Graphics.highlightRectangleBlockCoords(this.x + x, y, 1, 1);
 				}
 			}
 		}
 	}
 
-	public float getLightLevel(int blockX, int blockY) {
-		return lightLevels[blockX % CHUNK_WIDTH][blockY];
+	/**
+	 * Brings the tiles of the generated chunk's sections that are on the screen up
+	 * to date, so that {@link #renderTiles(Map, int, int)} can draw them
+	 */
+	void prepareTiles(Map map) {
+		int maxRenderHeight = getMaxRenderHeight();
+		for (int section = getMinRenderHeight() / ChunkSection.SECTION_HEIGHT; section
+				* ChunkSection.SECTION_HEIGHT < maxRenderHeight; section++) {
+			if (!sections[section].isEmpty())
+				map.getChunkTiles().prepare(map, this, section);
+		}
 	}
 
-	private void updateLighting(Map map, int xInChunk, int yInChunk) {
-		// If the block is a light source, set it to max brightness and return
-		if (map.getBlock(x + xInChunk, yInChunk) != null && map.getBlock(x + xInChunk, yInChunk).isLightSource()) {
-			lightLevels[xInChunk][yInChunk] = 1;
-			return;
+	/**
+	 * Draws the generated chunk's sections from their tiles onto some rows of the
+	 * screen. The tiles have to have been prepared by {@link #prepareTiles(Map)}.
+	 * 
+	 * @param top    the first row of the screen to draw on
+	 * @param bottom the row after the last one to draw on
+	 */
+	void renderTiles(Map map, int top, int bottom) {
+		int maxRenderHeight = getMaxRenderHeight();
+		for (int section = getMinRenderHeight() / ChunkSection.SECTION_HEIGHT; section
+				* ChunkSection.SECTION_HEIGHT < maxRenderHeight; section++) {
+			if (!sections[section].isEmpty())
+				map.getChunkTiles().draw(this, section, top, bottom);
 		}
+	}
 
-		float oldLight = lightLevels[xInChunk][yInChunk];
+	/** Highlights the block under the mouse, if it is in the generated chunk and on the screen */
+	void renderHighlight(Map map) {
+		Point highlighted = map.getHighlightedBlock();
+		if (highlighted != null && highlighted.x >= this.x && highlighted.x < this.x + CHUNK_WIDTH
+				&& highlighted.y >= getMinRenderHeight() && highlighted.y < getMaxRenderHeight()
+				&& getBlock(highlighted.x, highlighted.y) != null)
+			Graphics.highlightRectangleBlockCoords(highlighted.x, highlighted.y, 1, 1);
+	}
 
-		// Set light level to 1 if there are no blocks above
-		skyCheck: for (int checkY = yInChunk + 1; checkY < Map.MAP_HEIGHT; checkY++) {
-			if (map.getBlock(x + xInChunk, checkY) != null) {
-				break skyCheck;
-			}
-			if (checkY == Map.MAP_HEIGHT - 1) {
-				lightLevels[xInChunk][yInChunk] = 1;
-				return;
-			}
-		}
+	/** Returns the lowest row of blocks on the screen */
+	private int getMinRenderHeight() {
+		return Math.max(Game.screen.getScreenOffsetY() / Block.BLOCK_SIZE, 0);
+	}
+
+	/** Returns the row above the highest row of the generated chunk's blocks on the screen */
+	private int getMaxRenderHeight() {
+		return Math.min((Game.screen.getScreenOffsetY() + Game.screen.getHeight()) / Block.BLOCK_SIZE + 1,
+				(topSection + 1) * ChunkSection.SECTION_HEIGHT);
+	}
+
+	/** Returns the light from the sky at a coordinate, from 0 to {@link LightEngine#MAX_LIGHT_LEVEL} */
+	public int getSkyLight(int blockX, int blockY) {
+		// Everything above the highest section with blocks in it is open sky
+		if (blockY / ChunkSection.SECTION_HEIGHT > topSection)
+			return LightEngine.MAX_LIGHT_LEVEL;
+		int cell = lightCellIndex(blockX, blockY);
+		if (lightLevels == null || cell >= lightLevels.length)
+			return 0;
+		return lightLevels[cell] & 15;
+	}
+
+	/** Returns the light from blocks at a coordinate, from 0 to {@link LightEngine#MAX_LIGHT_LEVEL} */
+	public int getBlockLight(int blockX, int blockY) {
+		int cell = lightCellIndex(blockX, blockY);
+		if (lightLevels == null || cell >= lightLevels.length)
+			return 0;
+		return (lightLevels[cell] >> 4) & 15;
+	}
+
+	/**
+	 * Sets the light from the sky at a coordinate. Cells above the highest section
+	 * with blocks in it are always fully lit, and must not be set.
+	 */
+	void setSkyLight(int blockX, int blockY, int lightLevel) {
+		byte[] levels = getLightLevels(blockY / ChunkSection.SECTION_HEIGHT);
+		int cell = lightCellIndex(blockX, blockY);
+		levels[cell] = (byte) ((levels[cell] & 0xF0) | lightLevel);
+		getSectionVersions()[blockY / ChunkSection.SECTION_HEIGHT]++;
+	}
+
+	/** Sets the light from blocks at a coordinate */
+	void setBlockLight(int blockX, int blockY, int lightLevel) {
+		int cell = lightCellIndex(blockX, blockY);
 
-		// If there are blocks above:
-
-		if (x + xInChunk - 1 >= 0)
-			lightLevels[xInChunk][yInChunk] = Math.max(map.getLightLevel(x + xInChunk - 1, yInChunk),
-					lightLevels[xInChunk][yInChunk]);
-		if (x + xInChunk + 1 < Map.MAP_SIZE_CHUNKS * CHUNK_WIDTH)
-			lightLevels[xInChunk][yInChunk] = Math.max(map.getLightLevel(x + xInChunk + 1, yInChunk),
-					lightLevels[xInChunk][yInChunk]);
-		if (yInChunk - 1 >= 0)
-			lightLevels[xInChunk][yInChunk] = Math.max(map.getLightLevel(x + xInChunk, yInChunk - 1),
-					lightLevels[xInChunk][yInChunk]);
-		if (yInChunk + 1 < Map.MAP_HEIGHT)
-			lightLevels[xInChunk][yInChunk] = Math.max(map.getLightLevel(x + xInChunk, yInChunk + 1),
-					lightLevels[xInChunk][yInChunk]);
-
-		if (map.getBlock(x + xInChunk, yInChunk) != null)
-			lightLevels[xInChunk][yInChunk] -= map.getBlock(x + xInChunk, yInChunk).getSubtractLighting();
-		else
-			lightLevels[xInChunk][yInChunk] -= Blocks.blockTranslucencies.get("air");
-
-		if (lightLevels[xInChunk][yInChunk] < 0)
-			lightLevels[xInChunk][yInChunk] = 0;
-		if (lightLevels[xInChunk][yInChunk] > 1)
-			lightLevels[xInChunk][yInChunk] = 1;
-
-		// If the light level changed, update adjacent blocks
-		if (lightLevels[xInChunk][yInChunk] != oldLight) {
-			if (x + xInChunk - 1 >= 0)
-				map.getChunkAtBlock(x + xInChunk + 1).updateLighting(map, (x + xInChunk - 1) % CHUNK_WIDTH, yInChunk);
-			if (x + xInChunk + 1 < Map.MAP_SIZE_CHUNKS * CHUNK_WIDTH)
-				map.getChunkAtBlock(x + xInChunk + 1).updateLighting(map, (x + xInChunk + 1) % CHUNK_WIDTH, yInChunk);
-			if (yInChunk - 1 >= 0)
-				map.getChunkAtBlock(x + xInChunk).updateLighting(map, (x + xInChunk) % CHUNK_WIDTH, yInChunk - 1);
-			if (yInChunk + 1 < Map.MAP_HEIGHT)
-				map.getChunkAtBlock(x + xInChunk).updateLighting(map, (x + xInChunk) % CHUNK_WIDTH, yInChunk + 1);
+		// Cells that haven't been stored have no light from blocks already
+		if (lightLevel == 0 && (lightLevels == null || cell >= lightLevels.length))
+			return;
+		byte[] levels = getLightLevels(blockY / ChunkSection.SECTION_HEIGHT);
+		levels[cell] = (byte) ((levels[cell] & 15) | (lightLevel << 4));
+		getSectionVersions()[blockY / ChunkSection.SECTION_HEIGHT]++;
+	}
+
+	/** Forgets every light level, so that the chunk can be lit from scratch */
+	void clearLightLevels() {
+		lightLevels = null;
+		for (int i = 0; i < NUM_SECTIONS; i++)
+			getSectionVersions()[i]++;
+	}
+
+	/**
+	 * Returns a number that changes whenever a block or light level in a section
+	 * changes
+	 */
+	public int getSectionVersion(int section) {
+		return getSectionVersions()[section];
+	}
+
+	private int[] getSectionVersions() {
+		// Chunks that were loaded from a save won't have them
+		if (sectionVersions == null)
+			sectionVersions = new int[NUM_SECTIONS];
+		return sectionVersions;
+	}
+
+	/** Returns whether a cell is above the highest section with blocks in it, so it is always fully lit */
+	boolean isAboveTopSection(int blockY) {
+		return blockY / ChunkSection.SECTION_HEIGHT > topSection;
+	}
+
+	/** Returns the number of bytes taken up by the chunk's light levels */
+	public int getLightLevelBytes() {
+		return lightLevels == null ? 0 : lightLevels.length;
+	}
+
+	/** Returns the index of a cell's light levels */
+	private int lightCellIndex(int blockX, int blockY) {
+		return blockY * CHUNK_WIDTH + blockX - x;
+	}
+
+	/**
+	 * Returns the light levels, growing them to reach a section and the top
+	 * section if they don't already. New cells are open to the sky, with no light
+	 * from blocks.
+	 */
+	private byte[] getLightLevels(int section) {
+		int length = (Math.max(section, topSection) + 1) * ChunkSection.SIZE;
+		if (lightLevels == null || lightLevels.length < length) {
+			int oldLength = lightLevels == null ? 0 : lightLevels.length;
+			lightLevels = lightLevels == null ? new byte[length] : Arrays.copyOf(lightLevels, length);
+			Arrays.fill(lightLevels, oldLength, length, SKY_LIT_CELL);
 		}
+		return lightLevels;
 	}
 
-	private void updateLighting(Map map) {
-		for (int blockX = 0; blockX < CHUNK_WIDTH; blockX++) {
-			for (int blockY = 0; blockY < Map.MAP_HEIGHT; blockY++) {
+	/**
+	 * Returns the height of the highest block in a column, or -1 if the column is
+	 * empty. Everything at or above it is open to the sky.
+	 */
+	public int getColumnTop(int xInChunk) {
+		return getColumnTops()[xInChunk];
+	}
+
+	/** Returns whether there are no blocks above a cell */
+	public boolean isOpenToSky(int blockX, int blockY) {
+		return blockY >= getColumnTops()[blockX - x];
+	}
 
-				updateLighting(map, blockX, blockY);
+	/** Returns the height of the highest block in each column, working them out if they were just loaded */
+	private short[] getColumnTops() {
+		if (columnTops == null) {
+			short[] tops = new short[CHUNK_WIDTH];
+			for (int xInChunk = 0; xInChunk < CHUNK_WIDTH; xInChunk++)
+				tops[xInChunk] = (short) findColumnTop(xInChunk, (topSection + 1) * ChunkSection.SECTION_HEIGHT - 1);
+			columnTops = tops;
+		}
+		return columnTops;
+	}
 
+	/** Returns the height of the highest block in a column at or below a height, or -1 if there isn't one */
+	private int findColumnTop(int xInChunk, int fromY) {
+		for (int y = fromY; y >= 0; y--) {
+			// Empty sections can be skipped over in one go
+			if (sections[y / ChunkSection.SECTION_HEIGHT].isEmpty()) {
+				y -= y % ChunkSection.SECTION_HEIGHT;
+				continue;
 			}
+			if (getBlock(x + xInChunk, y) != null)
+				return y;
 		}
+		return -1;
 	}
 
 }
@@ -0,0 +1,78 @@
+package net.thedanpage.game.world.map;
+
+import java.io.Serializable;
+
+import net.thedanpage.game.world.map.block.Block;
+
+/**
+ * The blocks of a chunk that are different from what the terrain generator
+ * makes there. An unbounded world keeps these for the chunks the player changed
+ * once they are evicted, instead of the whole chunk, and puts them back over
+ * freshly generated terrain when the chunk is needed again. Each changed block
+ * takes up a cell index and a reference, so a chunk with a few changes takes up
+ * a few bytes rather than a chunk's worth of blocks and light levels.
+ *
+ * @author Dan
+ */
+public class ChunkEdits implements Serializable {
+
+	private static final long serialVersionUID = 3149876012550390271L;
+
+	/** The changed cells, as <code>x * MAP_HEIGHT + y</code> within the chunk */
+	private final int[] cells;
+
+	/** The block in each changed cell, with null being air */
+	private final Block[] blocks;
+
+	private ChunkEdits(int[] cells, Block[] blocks) {
+		this.cells = cells;
+		this.blocks = blocks;
+	}
+
+	/**
+	 * Compares a chunk against the blocks the terrain generator makes for it, and
+	 * returns the blocks that are different, or null if there aren't any
+	 *
+	 * @param chunk     the chunk that was changed
+	 * @param generated the blocks generated for the chunk, indexed by
+	 *                  <code>[x][y]</code>
+	 */
+	public static ChunkEdits diff(Chunk chunk, Block[][] generated) {
+		// Count them first so that the arrays are the right size
+		int numCells = 0;
+		for (int x = 0; x < Chunk.CHUNK_WIDTH; x++)
+			for (int y = 0; y < Map.MAP_HEIGHT; y++)
+				if (chunk.getBlock(chunk.getX() + x, y) != generated[x][y])
+					numCells++;
+
+		if (numCells == 0)
+			return null;
+
+		int[] cells = new int[numCells];
+		Block[] blocks = new Block[numCells];
+		int i = 0;
+		for (int x = 0; x < Chunk.CHUNK_WIDTH; x++) {
+			for (int y = 0; y < Map.MAP_HEIGHT; y++) {
+				Block block = chunk.getBlock(chunk.getX() + x, y);
+				if (block != generated[x][y]) {
+					cells[i] = x * Map.MAP_HEIGHT + y;
+					blocks[i++] = block;
+				}
+			}
+		}
+		return new ChunkEdits(cells, blocks);
+	}
+
+	/** Puts the changed blocks back into a chunk that was generated again */
+	public void apply(Chunk chunk) {
+		for (int i = 0; i < cells.length; i++)
+			chunk.setBlock(blocks[i], chunk.getX() + cells[i] / Map.MAP_HEIGHT, cells[i] % Map.MAP_HEIGHT);
+		chunk.setEdited(true);
+	}
+
+	/** Returns the number of blocks that are different from the generated terrain */
+	public int size() {
+		return cells.length;
+	}
+
+}
@@ -0,0 +1,185 @@
+package net.thedanpage.game.world.map;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import net.thedanpage.game.framework.LongHashMap;
+import net.thedanpage.game.world.map.terrain.TerrainGen;
+
+/**
+ * Generates chunks on a pool of background threads, so that the game thread
+ * never has to wait for terrain generation. Chunks are requested with
+ * {@link #request(int, int)}, and finished chunks are picked up with
+ * {@link #pollGenerated()} by the {@link Map} at the start of a tick. Waiting
+ * chunks are generated in order of priority, lowest first.
+ *
+ * <br>
+ * <br>
+ *
+ * Requests and polling must happen on the game thread. The worker threads only
+ * ever touch the new chunk they are generating, which isn't visible to the rest
+ * of the game until it has been polled.
+ *
+ * @author Dan
+ *
+ */
+public class ChunkGenerationService {
+
+	/** The number of worker threads, leaving one core free for the game thread */
+	public static final int NUM_THREADS = Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+
+	/** The worker threads, shared by every map */
+	private static ThreadPoolExecutor executor;
+
+	/** Used to keep requests with the same priority in the order they were made */
+	private static final AtomicLong requestCounter = new AtomicLong();
+
+	/** Generates the blocks of the world's chunks */
+	private final TerrainGen terrainGen;
+
+	/**
+	 * Chunks that have been requested and haven't been polled yet, keyed by chunk
+	 * index. Only used on the game thread.
+	 */
+	private final LongHashMap<GenerationTask> pending = new LongHashMap<GenerationTask>();
+
+	/** Chunks the workers have finished generating */
+	private final ConcurrentLinkedQueue<Chunk> generated = new ConcurrentLinkedQueue<Chunk>();
+
+	/**
+	 * @param terrainGen the world's terrain generator, which is shared by every
+	 *                   worker thread
+	 */
+	public ChunkGenerationService(TerrainGen terrainGen) {
+		this.terrainGen = terrainGen;
+	}
+
+	private static synchronized ThreadPoolExecutor getExecutor() {
+		if (executor == null) {
+			AtomicInteger threadNumber = new AtomicInteger();
+			executor = new ThreadPoolExecutor(NUM_THREADS, NUM_THREADS, 0, TimeUnit.MILLISECONDS,
+					new PriorityBlockingQueue<Runnable>(), runnable -> {
+						Thread thread = new Thread(runnable, "Chunk generator " + threadNumber.incrementAndGet());
+						// Don't keep the game running after the window is closed
+						thread.setDaemon(true);
+						return thread;
+					});
+		}
+		return executor;
+	}
+
+	/** Starts generating the chunk at a chunk index in the background, with the lowest priority */
+	public void request(int index) {
+		request(index, Integer.MAX_VALUE);
+	}
+
+	/**
+	 * Starts generating the chunk at a chunk index in the background. If the chunk
+	 * has already been requested and is still waiting, it is moved to the new
+	 * priority instead.
+	 *
+	 * @param priority chunks with a lower priority are generated first
+	 */
+	public void request(int index, int priority) {
+		GenerationTask task = pending.get(index);
+		if (task == null) {
+			task = new GenerationTask(index, priority);
+			pending.put(index, task);
+			getExecutor().execute(task);
+			return;
+		}
+
+		// Only tasks still in the queue can be moved, since they are sorted on the way in
+		if (task.priority != priority && getExecutor().getQueue().remove(task)) {
+			task.priority = priority;
+			getExecutor().execute(task);
+		}
+	}
+
+	/**
+	 * Stops generating a chunk if it hasn't been started yet. A chunk that is
+	 * already being generated will still be returned by {@link #pollGenerated()}.
+	 */
+	public void cancel(int index) {
+		GenerationTask task = pending.remove(index);
+		if (task != null && !getExecutor().getQueue().remove(task))
+			task.cancelled = true;
+	}
+
+	/** Returns whether a chunk has been requested and hasn't been polled yet */
+	public boolean isPending(int index) {
+		return pending.containsKey(index);
+	}
+
+	/** Returns the number of chunks that have been requested and haven't been polled yet */
+	public int getNumPending() {
+		return pending.size();
+	}
+
+	/**
+	 * Returns a chunk that has finished generating, or null if there aren't any.
+	 * Each chunk is only returned once.
+	 */
+	public Chunk pollGenerated() {
+		Chunk chunk = generated.poll();
+		if (chunk != null) {
+			long index = Math.floorDiv(chunk.getX(), Chunk.CHUNK_WIDTH);
+			GenerationTask task = pending.get(index);
+			// A chunk that was cancelled and requested again is still waiting for its new task
+			if (task != null && task.chunk == chunk)
+				pending.remove(index);
+		}
+		return chunk;
+	}
+
+	/** Generates one chunk. Tasks are ordered by priority in the executor's queue. */
+	private class GenerationTask implements Runnable, Comparable<GenerationTask> {
+
+		private final int index;
+
+		/** The order the task was created in, for breaking ties */
+		private final long order = requestCounter.getAndIncrement();
+
+		/** Only changed by the game thread while the task isn't in the queue */
+		private volatile int priority;
+
+		/** Set when the task is cancelled after it has been taken off the queue */
+		private volatile boolean cancelled = false;
+
+		/** The generated chunk, set before it is added to {@link #generated} */
+		private volatile Chunk chunk;
+
+		public GenerationTask(int index, int priority) {
+			this.index = index;
+			this.priority = priority;
+		}
+
+		@Override
+		public void run() {
+			if (cancelled)
+				return;
+
+			Chunk chunk = new Chunk(index * Chunk.CHUNK_WIDTH);
+			try {
+				chunk.generate(terrainGen);
+			} catch (Exception e) {
+				e.printStackTrace();
+			}
+			this.chunk = chunk;
+			generated.add(chunk);
+		}
+
+		@Override
+		public int compareTo(GenerationTask other) {
+			if (priority != other.priority)
+				return Integer.compare(priority, other.priority);
+			return Long.compare(order, other.order);
+		}
+
+	}
+
+}
@@ -0,0 +1,191 @@
+package net.thedanpage.game.world.map;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+import net.thedanpage.game.world.entity.Entity;
+
+/**
+ * Decides which chunks to generate ahead of time, before they come onto the
+ * screen. Chunks around the player are given a priority based on roughly how
+ * many ticks it will be until the camera reaches them, using the player's
+ * velocity, so chunks in the direction of travel are generated first and the
+ * chunk the camera is about to enter is always at the front of the queue.
+ *
+ * <br>
+ * <br>
+ *
+ * Chunks that are already on the screen are always requested. Other chunks are
+ * requested at most {@link #budgetPerTick} at a time, so that the generation
+ * queue doesn't fill up with chunks the player turns away from.
+ *
+ * @author Dan
+ *
+ */
+public class ChunkPrefetchPlanner implements Serializable {
+
+	private static final long serialVersionUID = 4127598826635190417L;
+
+	/** The default number of chunks around the player that are generated ahead of time */
+	public static final int DEFAULT_RADIUS_CHUNKS = 6;
+
+	/** The default number of chunks that can be newly requested each tick */
+	public static final int DEFAULT_BUDGET_PER_TICK = 2;
+
+	/** The default number of ticks of movement to look ahead by */
+	public static final int DEFAULT_LOOK_AHEAD_TICKS = 120;
+
+	/**
+	 * The speed, in blocks per tick, the camera is assumed to move at towards
+	 * chunks the player isn't moving towards. This is the player's walking speed.
+	 */
+	private static final double REFERENCE_SPEED = 0.2;
+
+	/** The largest number of ticks a priority can represent */
+	private static final int MAX_TICKS = 1000000;
+
+	/** How many chunks on each side of the player are generated ahead of time */
+	private int radiusChunks = DEFAULT_RADIUS_CHUNKS;
+
+	/** The most chunks that can be newly requested each tick, not counting visible ones */
+	private int budgetPerTick = DEFAULT_BUDGET_PER_TICK;
+
+	/** How many ticks of movement the planner looks ahead by, in the direction of travel */
+	private int lookAheadTicks = DEFAULT_LOOK_AHEAD_TICKS;
+
+	/** The number of times an ungenerated chunk was on the screen during a render */
+	private long ungeneratedChunkRenders = 0;
+
+	/** The number of renders where at least one ungenerated chunk was on the screen */
+	private long rendersWithUngeneratedChunks = 0;
+
+	/** The total number of chunks that have been requested */
+	private long chunksRequested = 0;
+
+	/**
+	 * The chunks being considered, each packed as the priority in the upper 32 bits
+	 * and the chunk index in the lower 32 bits so that sorting orders them by
+	 * priority. Reused every tick.
+	 */
+	private transient long[] candidates;
+
+	/**
+	 * Requests chunks around a player from a generation service, most urgent first
+	 *
+	 * @param visibleMin the leftmost chunk index on the screen
+	 * @param visibleMax one past the rightmost chunk index on the screen
+	 */
+	public void plan(Map map, ChunkGenerationService service, Entity player, int visibleMin, int visibleMax) {
+		int playerChunk = Math.floorDiv((int) Math.floor(player.getX()), Chunk.CHUNK_WIDTH);
+		double velocityX = player.getVelocityX();
+
+		// Reach further out in the direction the player is moving
+		int lookAheadChunks = (int) Math.ceil(Math.abs(velocityX) * lookAheadTicks / Chunk.CHUNK_WIDTH);
+		int min = Math.min(visibleMin, playerChunk - radiusChunks - (velocityX < 0 ? lookAheadChunks : 0));
+		int max = Math.max(visibleMax - 1, playerChunk + radiusChunks + (velocityX > 0 ? lookAheadChunks : 0));
+
+		if (candidates == null || candidates.length < max - min + 1)
+			candidates = new long[max - min + 1];
+
+		int numCandidates = 0;
+		for (int index = min; index <= max; index++) {
+			Chunk chunk = map.getOrCreateChunk(index);
+			if (chunk == null || chunk.isGenerated())
+				continue;
+
+			int priority = getPriority(index, playerChunk, velocityX, visibleMin, visibleMax);
+			candidates[numCandidates++] = ((long) priority << 32) | (index & 0xffffffffL);
+		}
+
+		Arrays.sort(candidates, 0, numCandidates);
+
+		int requestsLeft = budgetPerTick;
+		for (int i = 0; i < numCandidates; i++) {
+			int priority = (int) (candidates[i] >>> 32);
+			int index = (int) candidates[i];
+			boolean visible = index >= visibleMin && index < visibleMax;
+
+			// Chunks that are already waiting just have their priority updated
+			if (service.isPending(index))
+				service.request(index, priority);
+			else if (visible || requestsLeft > 0) {
+				service.request(index, priority);
+				chunksRequested++;
+				if (!visible)
+					requestsLeft--;
+			}
+		}
+	}
+
+	/**
+	 * Returns the priority of a chunk, lowest first. This is roughly the number of
+	 * ticks before the chunk comes onto the screen, with ties broken by distance
+	 * from the player.
+	 */
+	private static int getPriority(int index, int playerChunk, double velocityX, int visibleMin, int visibleMax) {
+		int distanceFromPlayer = Math.abs(index - playerChunk);
+
+		int blocksUntilVisible;
+		if (index < visibleMin)
+			blocksUntilVisible = (visibleMin - index) * Chunk.CHUNK_WIDTH;
+		else if (index >= visibleMax)
+			blocksUntilVisible = (index - visibleMax + 1) * Chunk.CHUNK_WIDTH;
+		else
+			blocksUntilVisible = 0;
+
+		// The camera reaches chunks ahead of the player at the player's speed, and
+		// chunks behind at walking speed once the player turns around
+		boolean ahead = (index > playerChunk && velocityX > 0) || (index < playerChunk && velocityX < 0);
+		double speed = ahead ? Math.max(Math.abs(velocityX), REFERENCE_SPEED) : REFERENCE_SPEED;
+
+		int ticks = (int) Math.min(blocksUntilVisible / speed, MAX_TICKS);
+		return ticks * 64 + Math.min(distanceFromPlayer, 63);
+	}
+
+	/** Records that an ungenerated chunk was on the screen while rendering */
+	public void recordUngeneratedChunkRender() {
+		ungeneratedChunkRenders++;
+	}
+
+	/** Records that at least one ungenerated chunk was on the screen during a render */
+	public void recordRenderWithUngeneratedChunks() {
+		rendersWithUngeneratedChunks++;
+	}
+
+	public long getUngeneratedChunkRenders() {
+		return ungeneratedChunkRenders;
+	}
+
+	public long getRendersWithUngeneratedChunks() {
+		return rendersWithUngeneratedChunks;
+	}
+
+	public long getChunksRequested() {
+		return chunksRequested;
+	}
+
+	public int getRadiusChunks() {
+		return radiusChunks;
+	}
+
+	public void setRadiusChunks(int radiusChunks) {
+		this.radiusChunks = Math.max(0, radiusChunks);
+	}
+
+	public int getBudgetPerTick() {
+		return budgetPerTick;
+	}
+
+	public void setBudgetPerTick(int budgetPerTick) {
+		this.budgetPerTick = Math.max(0, budgetPerTick);
+	}
+
+	public int getLookAheadTicks() {
+		return lookAheadTicks;
+	}
+
+	public void setLookAheadTicks(int lookAheadTicks) {
+		this.lookAheadTicks = Math.max(0, lookAheadTicks);
+	}
+
+}
@@ -0,0 +1,171 @@
+package net.thedanpage.game.world.map;
+
+import java.io.Serializable;
+import java.util.IdentityHashMap;
+
+import net.thedanpage.game.world.map.block.Block;
+import net.thedanpage.game.world.map.block.Blocks;
+
+/**
+ * A fixed-height slice of a {@link Chunk}, {@link #SECTION_HEIGHT} blocks tall.
+ * Sections that are filled with a single block, like the sky or solid stone,
+ * share one immutable instance from {@link #uniform(Block)}. A shared section
+ * is copied the first time a block in it changes, so most of the sky never
+ * takes up any memory at all.
+ *
+ * @author Dan
+ */
+public class ChunkSection implements Serializable {
+
+	private static final long serialVersionUID = -6207950532184963402L;
+
+	/** The height of a section, in blocks */
+	public static final int SECTION_HEIGHT = 16;
+
+	/** The number of cells in a section */
+	static final int SIZE = Chunk.CHUNK_WIDTH * SECTION_HEIGHT;
+
+	/** The shared section that is completely filled with air */
+	public static final ChunkSection EMPTY = new ChunkSection(null);
+
+	/**
+	 * The shared sections that are completely filled with one block. They are
+	 * keyed by the block itself rather than its ID, since fluids flowing in
+	 * different directions are different blocks with the same ID. Chunks are
+	 * generated on several threads, so it is only used while holding its lock.
+	 */
+	private static final IdentityHashMap<Block, ChunkSection> uniformSections = new IdentityHashMap<Block, ChunkSection>();
+
+	/** Whether this is a shared section, which can never be changed */
+	private final boolean shared;
+
+	/** The block filling a shared section */
+	private final Block uniformBlock;
+
+	/**
+	 * The blocks in an unshared section, if it is paletted. Cells are indexed by
+	 * <code>x * SECTION_HEIGHT + y</code>.
+	 */
+	private PalettedBlockStorage palettedBlocks;
+
+	/** The blocks in an unshared section, if it isn't paletted */
+	private Block[] blocks;
+
+	/** The number of cells in an unshared section that aren't air */
+	private int numBlocks = 0;
+
+	/** Creates a shared section filled with one block */
+	private ChunkSection(Block uniformBlock) {
+		this.shared = true;
+		this.uniformBlock = uniformBlock;
+	}
+
+	/** Creates an unshared section filled with one block */
+	private ChunkSection(Block fill, boolean paletted) {
+		this.shared = false;
+		this.uniformBlock = null;
+
+		if (paletted)
+			palettedBlocks = new PalettedBlockStorage(SIZE);
+		else
+			blocks = new Block[SIZE];
+
+		if (fill != null) {
+			for (int i = 0; i < SIZE; i++)
+				setBlock(i, fill);
+		}
+	}
+
+	/** Returns the shared section completely filled with a block */
+	public static ChunkSection uniform(Block block) {
+		if (block == null)
+			return EMPTY;
+		synchronized (uniformSections) {
+			return uniformSections.computeIfAbsent(block, b -> new ChunkSection(b));
+		}
+	}
+
+	/** Returns the block in a cell, or null if it is air */
+	public Block getBlock(int index) {
+		if (shared)
+			return uniformBlock;
+		if (palettedBlocks != null)
+			return palettedBlocks.get(index);
+		return blocks[index];
+	}
+
+	/**
+	 * Sets the block in a cell. Shared sections can't be changed, so this returns
+	 * the section that should be stored in place of this one: a copy if this
+	 * section is shared, or {@link #EMPTY} if the section has become all air.
+	 *
+	 * @param paletted whether a copy of a shared section should be paletted
+	 */
+	public ChunkSection setBlock(int index, Block block, boolean paletted) {
+		if (shared) {
+			if (block == uniformBlock)
+				return this;
+			ChunkSection copy = new ChunkSection(uniformBlock, paletted);
+			return copy.setBlock(index, block, paletted);
+		}
+
+		setBlock(index, block);
+		if (numBlocks == 0)
+			return EMPTY;
+		return this;
+	}
+
+	private void setBlock(int index, Block block) {
+		if (getBlock(index) != null)
+			numBlocks--;
+		if (block != null)
+			numBlocks++;
+
+		if (palettedBlocks != null)
+			palettedBlocks.set(index, block);
+		else
+			blocks[index] = block;
+	}
+
+	/**
+	 * Returns the shared section this one can be replaced with if every cell holds
+	 * the same block, or this section if not
+	 */
+	public ChunkSection compact() {
+		if (shared)
+			return this;
+
+		Block first = getBlock(0);
+		for (int i = 1; i < SIZE; i++) {
+			if (getBlock(i) != first)
+				return this;
+		}
+		return uniform(first);
+	}
+
+	/** Returns whether every cell in the section is air */
+	public boolean isEmpty() {
+		return shared ? uniformBlock == null : numBlocks == 0;
+	}
+
+	/** Returns whether this is a shared section, which can never be changed */
+	public boolean isShared() {
+		return shared;
+	}
+
+	/** Make sure a deserialized shared section is replaced by the shared instance */
+	private Object readResolve() {
+		if (shared)
+			return uniform(uniformBlock);
+		return this;
+	}
+
+	/** Describes the section, for debugging */
+	@Override
+	public String toString() {
+		if (shared)
+			return "ChunkSection[uniform " + (uniformBlock == null ? Blocks.blockNames[Blocks.AIR] : uniformBlock.getBlockType()) + "]";
+		return "ChunkSection[" + numBlocks + " blocks]";
+	}
+
+}
@@ -0,0 +1,227 @@
+package net.thedanpage.game.world.map;
+
+import java.util.Arrays;
+
+import net.thedanpage.game.Game;
+import net.thedanpage.game.framework.LongHashMap;
+import net.thedanpage.game.graphics.Graphics;
+import net.thedanpage.game.graphics.Screen;
+import net.thedanpage.game.graphics.Sprite;
+import net.thedanpage.game.graphics.Textures;
+import net.thedanpage.game.world.map.block.Block;
+import net.thedanpage.game.world.map.block.Blocks;
+
+/**
+ * Pictures of chunk sections with their blocks already drawn and lit, so that
+ * drawing a section is just copying rows of pixels to the screen. A section's
+ * picture, or tile, is only drawn again when a block or light level in it
+ * changes, when the sky gets brighter or darker, or when an animated texture in
+ * it moves on to its next frame.
+ *
+ * <br>
+ * <br>
+ *
+ * Tiles keep the runs of pixels in each row that aren't transparent, so air and
+ * the see-through parts of textures are skipped when copying, and the sky shows
+ * through.
+ *
+ * <br>
+ * <br>
+ *
+ * Only {@link #DEFAULT_MAX_TILES} tiles are kept at once. When another one is
+ * needed, the one that was drawn longest ago is forgotten, and its arrays are
+ * reused for the new one. It should only be used on the game thread, except
+ * that once the tiles on the screen have been prepared, they can be drawn to
+ * different bands of the screen by several threads at once.
+ *
+ * @author Dan
+ *
+ */
+public class ChunkTileCache {
+
+	/** The width of a tile, in pixels */
+	public static final int TILE_WIDTH = Chunk.CHUNK_WIDTH * Block.BLOCK_SIZE;
+
+	/** The height of a tile, in pixels */
+	public static final int TILE_HEIGHT = ChunkSection.SECTION_HEIGHT * Block.BLOCK_SIZE;
+
+	/**
+	 * The number of tiles kept by default, which is a few screens' worth. Each
+	 * tile takes <code>4 * TILE_WIDTH * TILE_HEIGHT</code> bytes of pixels, so
+	 * this is about 2MB.
+	 */
+	public static final int DEFAULT_MAX_TILES = 64;
+
+	/** The picture of one chunk section, and what it was drawn from */
+	private static class Tile {
+
+		/** The tile's pixels, with their runs that aren't transparent */
+		final Sprite sprite = new Sprite(new int[TILE_WIDTH * TILE_HEIGHT], TILE_WIDTH, TILE_HEIGHT);
+
+		/** The chunk the tile was drawn from */
+		Chunk chunk;
+
+		/** The section's version from {@link Chunk#getSectionVersion(int)} when it was drawn */
+		int version;
+
+		/** The sky brightness when the tile was drawn */
+		int skyBrightness;
+
+		/**
+		 * The block animation time when the tile was drawn, or -1 if there aren't any
+		 * animated blocks in it
+		 */
+		int animTime;
+
+		/** The value of {@link ChunkTileCache#clock} when the tile was last used */
+		long lastUsed;
+
+	}
+
+	private final int maxTiles;
+
+	/** The tiles, by chunk index and section */
+	private final LongHashMap<Tile> tiles;
+
+	/** Counts up every time a tile is used, for finding the one used longest ago */
+	private long clock = 0;
+
+	/** The number of times a tile has been drawn, for measuring */
+	private long tilesDrawn = 0;
+
+	public ChunkTileCache() {
+		this(DEFAULT_MAX_TILES);
+	}
+
+	/**
+	 * @param maxTiles the number of tiles to keep at once
+	 */
+	public ChunkTileCache(int maxTiles) {
+		this.maxTiles = Math.max(1, maxTiles);
+		this.tiles = new LongHashMap<Tile>(this.maxTiles + 1);
+	}
+
+	/**
+	 * Draws a section of a generated chunk to the screen, drawing its tile first if
+	 * it is out of date
+	 */
+	public void render(Map map, Chunk chunk, int section) {
+		prepare(map, chunk, section);
+		draw(chunk, section, 0, Game.screen.getHeight());
+	}
+
+	/**
+	 * Makes sure the tile of a section of a generated chunk is up to date, drawing
+	 * it if it isn't, so that it can be drawn to the screen with
+	 * {@link #draw(Chunk, int, int, int)}
+	 */
+	public void prepare(Map map, Chunk chunk, int section) {
+		long key = key(chunk, section);
+		Tile tile = tiles.get(key);
+		if (tile == null) {
+			tile = tiles.size() >= maxTiles ? evictLeastRecentlyUsed() : new Tile();
+			tile.chunk = null;
+			tiles.put(key, tile);
+		}
+		tile.lastUsed = ++clock;
+
+		if (tile.chunk != chunk || tile.version != chunk.getSectionVersion(section)
+				|| tile.skyBrightness != map.getSkyBrightness()
+				|| (tile.animTime >= 0 && tile.animTime != Blocks.getBlockAnimTime()))
+			draw(tile, map, chunk, section);
+	}
+
+	/**
+	 * Copies the tile of a chunk section to some rows of the screen. The tile has
+	 * to have been brought up to date by {@link #prepare(Map, Chunk, int)} first.
+	 * This doesn't change the cache, so several threads can draw different bands
+	 * of the screen at once, as long as nothing is being prepared.
+	 * 
+	 * @param top    the first row of the screen to draw on
+	 * @param bottom the row after the last one to draw on
+	 */
+	public void draw(Chunk chunk, int section, int top, int bottom) {
+		Tile tile = tiles.get(key(chunk, section));
+		if (tile == null || tile.chunk != chunk)
+			return;
+
+		Screen screen = Game.screen;
+		Graphics.drawSprite(chunk.getX() * Block.BLOCK_SIZE + screen.getScreenOffsetX(),
+				screen.getHeight() - (section + 1) * TILE_HEIGHT + screen.getScreenOffsetY(), tile.sprite, top, bottom);
+	}
+
+	/**
+	 * Returns the number of tiles a screen of a certain size can show at once,
+	 * which is how many need to be kept for drawing it in bands
+	 */
+	public static int tilesToCover(int width, int height) {
+		return (width / TILE_WIDTH + 2) * (height / TILE_HEIGHT + 2);
+	}
+
+	/** Forgets every tile */
+	public void clear() {
+		tiles.clear();
+	}
+
+	/** Returns the number of tiles being kept */
+	public int size() {
+		return tiles.size();
+	}
+
+	/** Returns the number of times a tile has been drawn, rather than reused */
+	public long getTilesDrawn() {
+		return tilesDrawn;
+	}
+
+	/** Draws every block in a section into a tile, and finds its runs of pixels */
+	private void draw(Tile tile, Map map, Chunk chunk, int section) {
+		tilesDrawn++;
+		tile.chunk = chunk;
+		tile.version = chunk.getSectionVersion(section);
+		tile.skyBrightness = map.getSkyBrightness();
+		tile.animTime = -1;
+
+		int[] pixels = tile.sprite.getPixels();
+		Arrays.fill(pixels, -1);
+		int y0 = section * ChunkSection.SECTION_HEIGHT;
+		for (int x = 0; x < Chunk.CHUNK_WIDTH; x++) {
+			int blockX = chunk.getX() + x;
+			for (int y = 0; y < ChunkSection.SECTION_HEIGHT; y++) {
+				Block block = chunk.getBlock(blockX, y0 + y);
+				if (block == null)
+					continue;
+				if (block.isAnimated())
+					tile.animTime = Blocks.getBlockAnimTime();
+
+				int[] texture = Textures.getLitBlockTexture(Blocks.textureIndex[block.getId()],
+						block.getAnimationFrame(), map.getLightLevel(blockX, y0 + y));
+				int offset = x * Block.BLOCK_SIZE + (ChunkSection.SECTION_HEIGHT - 1 - y) * Block.BLOCK_SIZE * TILE_WIDTH;
+				for (int row = 0; row < Block.BLOCK_SIZE; row++)
+					System.arraycopy(texture, row * Block.BLOCK_SIZE, pixels, offset + row * TILE_WIDTH,
+							Block.BLOCK_SIZE);
+			}
+		}
+
+		tile.sprite.updateSpans();
+	}
+
+	/** Returns a tile's key, from its chunk's index and its section */
+	private static long key(Chunk chunk, int section) {
+		return (long) Math.floorDiv(chunk.getX(), Chunk.CHUNK_WIDTH) * Chunk.NUM_SECTIONS + section;
+	}
+
+	/** Forgets the tile that was used longest ago, and returns it to be reused */
+	private Tile evictLeastRecentlyUsed() {
+		long oldest = 0;
+		long oldestUsed = Long.MAX_VALUE;
+		for (int slot = 0; slot < tiles.capacity(); slot++) {
+			Tile tile = tiles.valueAt(slot);
+			if (tile != null && tile.lastUsed < oldestUsed) {
+				oldest = tiles.keyAt(slot);
+				oldestUsed = tile.lastUsed;
+			}
+		}
+		return tiles.remove(oldest);
+	}
+
+}
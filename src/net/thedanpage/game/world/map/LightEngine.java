@@ -0,0 +1,447 @@
+package net.thedanpage.game.world.map;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import net.thedanpage.game.framework.IntQueue;
+import net.thedanpage.game.world.map.block.Block;
+import net.thedanpage.game.world.map.block.Blocks;
+
+/**
+ * Spreads light through a map's chunks, breadth first from the cells that give
+ * off light. There are two separate kinds of light: light from the sky, which
+ * fully lights every cell open to the sky, and light from blocks, which fully
+ * lights every light source block. Every other cell takes the brightest of its
+ * neighbours, minus however much its own block (or air) takes away. Light
+ * levels are whole numbers from 0 to {@link #MAX_LIGHT_LEVEL}, so they can be
+ * packed into four bits each.
+ *
+ * <br>
+ * <br>
+ *
+ * Keeping the two apart means the sky can be made darker or brighter, with
+ * {@link Map#setSkyBrightness(int)}, without lighting anything again. The two
+ * are only combined when they are drawn, by {@link Map#getLightLevel(int, int)}.
+ *
+ * <br>
+ * <br>
+ *
+ * Lighting only runs when something changes: when a chunk is generated, with
+ * {@link #lightChunk(Chunk)}, and when a block is set, with
+ * {@link #blockChanged(Chunk, int, int, Block, int)}. A change first clears the
+ * light that came through the changed cells, then spreads light back in from
+ * the cells around the cleared area.
+ *
+ * <br>
+ * <br>
+ *
+ * Many chunks at once can be lit in parallel with {@link #lightChunks(Collection)}.
+ * Each chunk is first lit from its own light sources, all at the same time.
+ * Then, alternating between chunks at even and odd indices, each chunk takes
+ * in the light from the edges of its neighbours, until no light crosses a
+ * border. Chunks next to each other are never lit at the same time, so each
+ * one only has to change its own light, and the result is the same as lighting
+ * the chunks one at a time.
+ *
+ * <br>
+ * <br>
+ *
+ * Only chunks that have been generated are lit. The engine keeps its queues
+ * between changes, so it should only be used on the game thread.
+ *
+ * @author Dan
+ *
+ */
+public class LightEngine {
+
+	/** The light level of a fully lit cell */
+	public static final int MAX_LIGHT_LEVEL = 15;
+
+	/** The kind of light that comes from the sky */
+	private static final int SKY = 0;
+
+	/** The kind of light that comes from light source blocks */
+	private static final int BLOCKS = 1;
+
+	/** The fewest chunks that {@link #lightChunks(Collection)} lights in parallel */
+	public static final int MIN_PARALLEL_CHUNKS = 8;
+
+	private final Map map;
+
+	/** Cells whose light should be spread to their neighbours, as x, y pairs */
+	private final IntQueue addQueue = new IntQueue(4096);
+
+	/**
+	 * Cells that have just been cleared, whose neighbours might have been lit
+	 * through them, as x, y and the old light level
+	 */
+	private final IntQueue removeQueue = new IntQueue(1024);
+
+	/**
+	 * The only chunk whose light can be changed, while lighting chunks in
+	 * parallel, or null if any chunk's light can be changed
+	 */
+	private Chunk writableChunk = null;
+
+	/** The number of cells that have been made brighter, for telling when lighting in parallel is done */
+	private int cellsBrightened = 0;
+
+	/** Each thread's engine for lighting chunks in parallel */
+	private final ThreadLocal<LightEngine> workers;
+
+	public LightEngine(Map map) {
+		this.map = map;
+		this.workers = ThreadLocal.withInitial(() -> new LightEngine(map));
+	}
+
+	/**
+	 * Lights a chunk that has just been generated, and spreads light between it
+	 * and the chunks either side of it
+	 */
+	public void lightChunk(Chunk chunk) {
+		lightFromSources(chunk);
+
+		// Spread light between the chunk and its neighbours
+		for (int kind = SKY; kind <= BLOCKS; kind++) {
+			enqueueBorders(chunk, kind);
+			propagateAdd(kind);
+		}
+	}
+
+	/**
+	 * Lights chunks that have all just been generated, in parallel if there are at
+	 * least {@link #MIN_PARALLEL_CHUNKS} of them. The chunks must already be in
+	 * the map.
+	 */
+	public void lightChunks(Collection<Chunk> chunks) {
+		if (chunks.size() < MIN_PARALLEL_CHUNKS) {
+			for (Chunk chunk : chunks)
+				lightChunk(chunk);
+			return;
+		}
+
+		// Light each chunk from its own light sources, without looking at its neighbours
+		chunks.parallelStream().forEach(chunk -> workers.get().lightAlone(chunk));
+
+		// Let light across the borders between chunks, alternating between even and odd
+		// chunks so that no two chunks next to each other are lit at once
+		List<Chunk> even = new ArrayList<Chunk>();
+		List<Chunk> odd = new ArrayList<Chunk>();
+		for (Chunk chunk : chunks)
+			(Math.floorMod(Math.floorDiv(chunk.getX(), Chunk.CHUNK_WIDTH), 2) == 0 ? even : odd).add(chunk);
+		boolean changed = true;
+		while (changed) {
+			changed = takeLightFromNeighbours(even);
+			changed |= takeLightFromNeighbours(odd);
+		}
+
+		// Spread light into the chunks that were already lit around the new ones
+		Set<Chunk> lit = new HashSet<Chunk>(chunks);
+		List<Chunk> edges = new ArrayList<Chunk>();
+		for (Chunk chunk : chunks) {
+			if (isLitOutside(chunk.getX() - 1, lit) || isLitOutside(chunk.getX() + Chunk.CHUNK_WIDTH, lit))
+				edges.add(chunk);
+		}
+		for (int kind = SKY; kind <= BLOCKS; kind++) {
+			for (Chunk chunk : edges)
+				enqueueBorders(chunk, kind);
+			propagateAdd(kind);
+		}
+	}
+
+	/** Returns whether an X coordinate is in a generated chunk that isn't one of some chunks */
+	private boolean isLitOutside(int blockX, Set<Chunk> chunks) {
+		Chunk chunk = getLitChunk(blockX);
+		return chunk != null && !chunks.contains(chunk);
+	}
+
+	/**
+	 * Has every chunk take in the light from the edges of its neighbours, in
+	 * parallel. None of the chunks can be next to each other.
+	 *
+	 * @return whether any chunk got brighter
+	 */
+	private boolean takeLightFromNeighbours(List<Chunk> chunks) {
+		return chunks.parallelStream().map(chunk -> workers.get().takeLightFromNeighbours(chunk)).reduce(false,
+				(a, b) -> a || b);
+	}
+
+	/** Lights a chunk from its own light sources, only changing the chunk's own light */
+	private void lightAlone(Chunk chunk) {
+		writableChunk = chunk;
+		lightFromSources(chunk);
+		writableChunk = null;
+	}
+
+	/**
+	 * Spreads the light from the edges of a chunk's neighbours into it, only
+	 * changing the chunk's own light
+	 *
+	 * @return whether the chunk got brighter
+	 */
+	private boolean takeLightFromNeighbours(Chunk chunk) {
+		writableChunk = chunk;
+		cellsBrightened = 0;
+		for (int kind = SKY; kind <= BLOCKS; kind++) {
+			enqueueColumn(chunk.getX() - 1, kind);
+			enqueueColumn(chunk.getX() + Chunk.CHUNK_WIDTH, kind);
+			propagateAdd(kind);
+		}
+		writableChunk = null;
+		return cellsBrightened > 0;
+	}
+
+	/**
+	 * Lights a chunk from scratch, from the sky above it and the light source
+	 * blocks in it
+	 */
+	private void lightFromSources(Chunk chunk) {
+		int x0 = chunk.getX();
+		int top = (chunk.getTopSection() + 1) * ChunkSection.SECTION_HEIGHT;
+		chunk.clearLightLevels();
+
+		for (int xInChunk = 0; xInChunk < Chunk.CHUNK_WIDTH; xInChunk++) {
+			int blockX = x0 + xInChunk;
+			int columnTop = chunk.getColumnTop(xInChunk);
+			for (int y = 0; y < top; y++) {
+				if (y >= columnTop)
+					setSource(chunk, blockX, y, SKY);
+				else
+					chunk.setSkyLight(blockX, y, 0);
+			}
+		}
+
+		propagateAdd(SKY);
+
+		for (int xInChunk = 0; xInChunk < Chunk.CHUNK_WIDTH; xInChunk++) {
+			int blockX = x0 + xInChunk;
+			for (int y = 0; y < top; y++) {
+				if (isLightSource(chunk.getBlock(blockX, y)))
+					setSource(chunk, blockX, y, BLOCKS);
+			}
+		}
+
+		propagateAdd(BLOCKS);
+	}
+
+	/**
+	 * Queues the cells along both sides of the border between a chunk and each of
+	 * its neighbours, so that light spreads across them
+	 */
+	private void enqueueBorders(Chunk chunk, int kind) {
+		int x0 = chunk.getX();
+		int x1 = x0 + Chunk.CHUNK_WIDTH - 1;
+
+		// The open sky above the chunk isn't stored, so it hasn't spread anywhere yet
+		if (kind == SKY) {
+			for (int y = (chunk.getTopSection() + 1) * ChunkSection.SECTION_HEIGHT; y < Map.MAP_HEIGHT; y++) {
+				enqueueAdd(x0, y);
+				enqueueAdd(x1, y);
+			}
+		}
+
+		enqueueColumn(x0 - 1, kind);
+		enqueueColumn(x1 + 1, kind);
+		enqueueColumn(x0, kind);
+		enqueueColumn(x1, kind);
+	}
+
+	/**
+	 * Updates the light around a block that has just been set
+	 *
+	 * @param chunk          the chunk the block is in
+	 * @param oldBlock       the block that was there before
+	 * @param oldColumnTop   the height of the highest block in the column before
+	 *                       the block was set, from {@link Chunk#getColumnTop(int)}
+	 */
+	public void blockChanged(Chunk chunk, int x, int y, Block oldBlock, int oldColumnTop) {
+		Block block = chunk.getBlock(x, y);
+
+		// Swapping one solid block for another only matters to the light from blocks,
+		// and only if one of them glows
+		boolean solidChanged = (block == null) != (oldBlock == null);
+		if (solidChanged)
+			skyLightChanged(chunk, x, y, oldColumnTop);
+		if (solidChanged || isLightSource(block) != isLightSource(oldBlock))
+			blockLightChanged(chunk, x, y, block);
+	}
+
+	/** Updates the light from the sky around a block that has been placed or removed */
+	private void skyLightChanged(Chunk chunk, int x, int y, int oldColumnTop) {
+		int columnTop = chunk.getColumnTop(x - chunk.getX());
+
+		// Clear the light that came through the changed cell, and through any cells
+		// that have just been covered up
+		if (!chunk.isAboveTopSection(y))
+			clear(chunk, x, y, SKY);
+		for (int coveredY = Math.max(oldColumnTop, 0); coveredY < columnTop; coveredY++)
+			clear(chunk, x, coveredY, SKY);
+		propagateRemove(SKY);
+
+		// Light the cells that are now open to the sky, including any that have just
+		// been uncovered
+		if (y >= columnTop)
+			setSource(chunk, x, y, SKY);
+		for (int uncoveredY = Math.max(columnTop, 0); uncoveredY < oldColumnTop; uncoveredY++)
+			setSource(chunk, x, uncoveredY, SKY);
+		propagateAdd(SKY);
+	}
+
+	/** Updates the light from blocks around a block that has been changed */
+	private void blockLightChanged(Chunk chunk, int x, int y, Block block) {
+		clear(chunk, x, y, BLOCKS);
+		propagateRemove(BLOCKS);
+
+		if (isLightSource(block))
+			setSource(chunk, x, y, BLOCKS);
+		propagateAdd(BLOCKS);
+	}
+
+	private static boolean isLightSource(Block block) {
+		return block != null && block.isLightSource();
+	}
+
+	/**
+	 * Returns how many levels of light a cell takes away from the light passing
+	 * into it. Every cell takes away at least one level, so light always fades.
+	 */
+	private static int getLightCost(Block block) {
+		float cost = block != null ? block.getSubtractLighting() : Blocks.translucency[Blocks.AIR];
+		return Math.max(1, Math.round(cost * MAX_LIGHT_LEVEL));
+	}
+
+	private static int getLight(Chunk chunk, int x, int y, int kind) {
+		return kind == SKY ? chunk.getSkyLight(x, y) : chunk.getBlockLight(x, y);
+	}
+
+	private static void setLight(Chunk chunk, int x, int y, int kind, int lightLevel) {
+		if (kind == SKY)
+			chunk.setSkyLight(x, y, lightLevel);
+		else
+			chunk.setBlockLight(x, y, lightLevel);
+	}
+
+	/** Returns a generated chunk containing an X coordinate, or null if there isn't one */
+	private Chunk getLitChunk(int blockX) {
+		Chunk chunk = map.getChunkAtBlock(blockX);
+		if (chunk == null || !chunk.isGenerated())
+			return null;
+		return chunk;
+	}
+
+	/** Returns whether a chunk's light can be changed, which it can't while lighting another one in parallel */
+	private boolean isWritable(Chunk chunk) {
+		return writableChunk == null || chunk == writableChunk;
+	}
+
+	private void enqueueAdd(int x, int y) {
+		addQueue.add(x);
+		addQueue.add(y);
+	}
+
+	/** Queues every lit cell in a column of a neighbouring chunk, so its light spreads */
+	private void enqueueColumn(int blockX, int kind) {
+		Chunk chunk = getLitChunk(blockX);
+		if (chunk == null)
+			return;
+		for (int y = 0; y < Map.MAP_HEIGHT; y++) {
+			if (getLight(chunk, blockX, y, kind) > 0)
+				enqueueAdd(blockX, y);
+		}
+	}
+
+	/** Fully lights a cell and queues it to spread its light */
+	private void setSource(Chunk chunk, int x, int y, int kind) {
+		// Open sky above the top section is always lit by the sky already
+		if (kind == BLOCKS || !chunk.isAboveTopSection(y))
+			setLight(chunk, x, y, kind, MAX_LIGHT_LEVEL);
+		enqueueAdd(x, y);
+	}
+
+	/** Darkens a cell and queues it so that light that came through it is cleared too */
+	private void clear(Chunk chunk, int x, int y, int kind) {
+		int oldLight = getLight(chunk, x, y, kind);
+		setLight(chunk, x, y, kind, 0);
+		removeQueue.add(x);
+		removeQueue.add(y);
+		removeQueue.add(oldLight);
+	}
+
+	/**
+	 * Clears the light of every cell that was lit through a cleared cell. A
+	 * neighbour that is darker than the cleared cell was might have been lit
+	 * through it, so it is cleared as well. A neighbour that is at least as bright
+	 * must have been lit some other way, so it is queued to spread its light back
+	 * into the cleared area afterwards.
+	 */
+	private void propagateRemove(int kind) {
+		while (!removeQueue.isEmpty()) {
+			int x = removeQueue.remove();
+			int y = removeQueue.remove();
+			int oldLight = removeQueue.remove();
+
+			removeFrom(x - 1, y, oldLight, kind);
+			removeFrom(x + 1, y, oldLight, kind);
+			removeFrom(x, y - 1, oldLight, kind);
+			removeFrom(x, y + 1, oldLight, kind);
+		}
+	}
+
+	private void removeFrom(int x, int y, int clearedLight, int kind) {
+		if (y < 0 || y >= Map.MAP_HEIGHT)
+			return;
+		Chunk chunk = getLitChunk(x);
+		if (chunk == null)
+			return;
+
+		// Open sky above the top section is always lit
+		if (kind == SKY && chunk.isAboveTopSection(y)) {
+			enqueueAdd(x, y);
+			return;
+		}
+
+		int light = getLight(chunk, x, y, kind);
+		if (light == 0)
+			return;
+		if (light < clearedLight)
+			clear(chunk, x, y, kind);
+		else
+			enqueueAdd(x, y);
+	}
+
+	/** Spreads light from every queued cell until nothing gets any brighter */
+	private void propagateAdd(int kind) {
+		while (!addQueue.isEmpty()) {
+			int x = addQueue.remove();
+			int y = addQueue.remove();
+			Chunk chunk = getLitChunk(x);
+			if (chunk == null)
+				continue;
+			int light = getLight(chunk, x, y, kind);
+
+			addTo(x - 1, y, light, kind);
+			addTo(x + 1, y, light, kind);
+			addTo(x, y - 1, light, kind);
+			addTo(x, y + 1, light, kind);
+		}
+	}
+
+	private void addTo(int x, int y, int neighbourLight, int kind) {
+		if (y < 0 || y >= Map.MAP_HEIGHT)
+			return;
+		Chunk chunk = getLitChunk(x);
+		if (chunk == null || !isWritable(chunk) || (kind == SKY && chunk.isAboveTopSection(y)))
+			return;
+
+		int light = neighbourLight - getLightCost(chunk.getBlock(x, y));
+		if (light > getLight(chunk, x, y, kind)) {
+			setLight(chunk, x, y, kind, light);
+			enqueueAdd(x, y);
+			cellsBrightened++;
+		}
+	}
+
+}
@@ -3,11 +3,14 @@ package net.thedanpage.game.world.map;
 import java.awt.Point;
 import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.List;
 import java.util.Random;
 
 import net.thedanpage.game.Game;
 import net.thedanpage.game.GameEngine;
+import net.thedanpage.game.framework.LongHashMap;
 import net.thedanpage.game.framework.Util;
 import net.thedanpage.game.graphics.Font;
 import net.thedanpage.game.graphics.Fonts;
@@ -17,11 +20,12 @@ import net.thedanpage.game.world.entity.Player;
 import net.thedanpage.game.world.map.block.Block;
 import net.thedanpage.game.world.map.block.BlockFactory;
 import net.thedanpage.game.world.map.block.Blocks;
+import net.thedanpage.game.world.map.terrain.TerrainGen;
 
 public class Map implements Serializable {
 	
 	// Required for Serializable
-	private static final long serialVersionUID = -5536697908734438630L;
+	private static final long serialVersionUID = 5221446025223702190L;
 
 	/**
 	 * The maximum height of the map, in blocks
@@ -29,9 +33,46 @@ public class Map implements Serializable {
 	public static final int MAP_HEIGHT = 256;
 
 	/**
-	 * The maximum number of chunks the map will create
+	 * The maximum number of chunks the map will create, unless it is unbounded
 	 */
 	public static final int MAP_SIZE_CHUNKS = 200;
+
+	/** Whether new worlds are unbounded, rather than {@link #MAP_SIZE_CHUNKS} wide */
+	public static final boolean UNBOUNDED_WORLDS = false;
+
+	/** The default number of chunks an unbounded world keeps in memory at once */
+	public static final int DEFAULT_MAX_RESIDENT_CHUNKS = 128;
+
+	/**
+	 * The default distance, in chunks, a chunk in an unbounded world can be from
+	 * every player before it is evicted
+	 */
+	public static final int DEFAULT_EVICTION_DISTANCE_CHUNKS = 32;
+
+	/**
+	 * Whether new chunks keep their blocks in a {@link PalettedBlockStorage}
+	 * rather than an array of block objects
+	 */
+	public static final boolean PALETTED_CHUNKS = true;
+
+	/**
+	 * Whether chunks are generated in the background by a
+	 * {@link ChunkGenerationService}, rather than on the game thread
+	 */
+	public static final boolean ASYNC_CHUNK_GENERATION = true;
+
+	/**
+	 * Whether chunks are drawn from pictures of their sections kept by a
+	 * {@link ChunkTileCache}, rather than a block at a time, by default
+	 */
+	public static final boolean CHUNK_TILES = true;
+
+	/**
+	 * The number of threads the world is drawn on by default, each drawing a
+	 * horizontal band of the screen with a {@link BandedRenderer}. With 1, it is
+	 * drawn on the game thread.
+	 */
+	public static final int RENDER_THREADS = 1;
 	
 	/** Used for generating seeds */
 	private static final Random random = new Random();
@@ -42,9 +83,93 @@ public class Map implements Serializable {
 	private List<List<Entity>> entities = new ArrayList<List<Entity>>();
 
 	/**
-	 * An ArrayList containing all chunks in the world
+	 * All chunks currently in memory, keyed by chunk index (the chunk's leftmost X
+	 * coordinate divided by {@link Chunk#CHUNK_WIDTH})
+	 */
+	private LongHashMap<Chunk> chunks = new LongHashMap<Chunk>(MAP_SIZE_CHUNKS);
+
+	/**
+	 * The changes the player made to chunks that were then evicted from an
+	 * unbounded world, which are put back when the chunk is generated again. Only
+	 * the blocks that are different from the generated terrain are kept, so this
+	 * grows with the number of blocks the player changed rather than the number of
+	 * chunks, and a chunk never takes up more than a cell index and a reference
+	 * for each of its blocks. Nothing is dropped from it, since that would lose
+	 * the player's changes.
+	 */
+	private LongHashMap<ChunkEdits> evictedChunkEdits = new LongHashMap<ChunkEdits>();
+
+	/**
+	 * Whether the world goes on forever, with chunks being created as they are
+	 * needed and evicted once they are far away from every player
+	 */
+	private boolean unbounded = false;
+
+	/** The most chunks an unbounded world will keep in {@link #chunks} */
+	private int maxResidentChunks = DEFAULT_MAX_RESIDENT_CHUNKS;
+
+	/** How far, in chunks, a chunk can be from every player before it is evicted */
+	private int evictionDistanceChunks = DEFAULT_EVICTION_DISTANCE_CHUNKS;
+
+	/** Reused for sorting chunks by their distance when evicting, so that eviction doesn't allocate */
+	private long[] evictionKeys = new long[0];
+
+	/**
+	 * Reused for collecting the chunks that finished generating since the last
+	 * update, so they can be lit together. It is created again when it is first
+	 * needed.
+	 */
+	private transient List<Chunk> publishedChunks;
+
+	/**
+	 * Keeps pictures of the chunk sections on the screen, so they don't have to be
+	 * drawn a block at a time. It isn't saved, and is created again when it is
+	 * first needed.
+	 */
+	private transient ChunkTileCache chunkTiles;
+
+	/**
+	 * Whether chunks are drawn from {@link #chunkTiles}, or null for
+	 * {@link #CHUNK_TILES}, which is what a loaded map starts with
+	 */
+	private transient Boolean renderingWithTiles;
+
+	/** The number of threads the world is drawn on, or 0 for {@link #RENDER_THREADS} */
+	private transient int renderThreads;
+
+	/** Draws the world in bands when it is drawn on more than one thread */
+	private transient BandedRenderer bandedRenderer;
+
+	/** Where the lines of information on the screen are built, so that new strings aren't made every frame */
+	private transient StringBuilder hudText;
+
+	/**
+	 * Generates chunks in the background. It isn't saved with the map, and is
+	 * created again when it is first needed.
+	 */
+	private transient ChunkGenerationService generationService;
+
+	/**
+	 * Generates the terrain of the world's chunks from its seed. It isn't saved
+	 * with the map, and is created again when it is first needed.
+	 */
+	private transient TerrainGen terrainGen;
+
+	/**
+	 * Spreads light through the chunks when they are generated or changed. It
+	 * isn't saved with the map, since the light levels are saved in the chunks.
+	 */
+	private transient LightEngine lightEngine;
+
+	/**
+	 * How much darker than full daylight the sky is, from 0 to
+	 * {@link LightEngine#MAX_LIGHT_LEVEL}. It is kept as darkness rather than
+	 * brightness so that maps saved before it existed load in daylight.
 	 */
-	private List<Chunk> chunks = new ArrayList<Chunk>();
+	private int skyDarkness = 0;
+
+	/** Decides which chunks are generated ahead of time, before they are on the screen */
+	private ChunkPrefetchPlanner prefetchPlanner = new ChunkPrefetchPlanner();
 
 	/**
 	 * The main player entity
@@ -60,6 +185,9 @@ public class Map implements Serializable {
 
 	private int chunkRenderMin, chunkRenderMax;
 
+	/** The coordinates of the block under the mouse, or null if there isn't one */
+	private Point highlightedBlock;
+
 	/** Controls whether the player's hitbox is showing or not */
 	private boolean showHitboxes = false;
 
@@ -67,10 +195,11 @@ public class Map implements Serializable {
 	public int currentPlaceBlockIndex = 0;
 
 	/**
-	 * Returns a {@link Chunk} object based on its index in {@link #chunks}
+	 * Returns a {@link Chunk} object based on its chunk index
 	 * 
-	 * @param index
-	 * @return
+	 * @param index the chunk's leftmost X coordinate divided by
+	 *              {@link Chunk#CHUNK_WIDTH}
+	 * @return the chunk, or null if it isn't in memory
 	 */
 	public Chunk getChunkAtIndex(int index) {
 		return chunks.get(index);
@@ -80,19 +209,102 @@ public class Map implements Serializable {
 	 * Returns the chunk that a certain X coordinate is inside of
 	 * 
 	 * @param blockX an X coordinate
-	 * @return the {@link Chunk} object
+	 * @return the {@link Chunk} object, or null if it isn't in memory
 	 */
 	public Chunk getChunkAtBlock(int blockX) {
-		try {
-			int chunk = blockX / Chunk.CHUNK_WIDTH;
-			if (chunk >= 0 && chunk < chunks.size())
-				return chunks.get(chunk);
-			else
-				throw new Exception("The chunk at index " + chunk + " and block x=" + blockX + " does not exist!");
-		} catch (Exception e) {
-			e.printStackTrace();
+		return chunks.get(Math.floorDiv(blockX, Chunk.CHUNK_WIDTH));
+	}
+
+	/**
+	 * Returns the chunk at a chunk index, creating it if the index is inside the
+	 * world and it isn't in memory yet. The new chunk isn't generated, unless the
+	 * player changed it before it was evicted.
+	 */
+	Chunk getOrCreateChunk(int index) {
+		Chunk chunk = chunks.get(index);
+		if (chunk == null && isChunkInBounds(index)) {
+			chunk = new Chunk(index * Chunk.CHUNK_WIDTH);
+
+			// Put back the changes the player made before it was evicted
+			ChunkEdits edits = evictedChunkEdits.remove(index);
+			if (edits != null) {
+				chunk.generate(getTerrainGen());
+				edits.apply(chunk);
+			}
+			chunks.put(index, chunk);
+
+			// Its neighbours may have changed while it was gone
+			if (chunk.isGenerated())
+				getLightEngine().lightChunk(chunk);
 		}
-		return null;
+		return chunk;
+	}
+
+	/**
+	 * Puts a chunk that has already been generated into the world, replacing the
+	 * one at its index. This is for building worlds without running the game.
+	 */
+	public void putChunk(Chunk chunk) {
+		int index = Math.floorDiv(chunk.getX(), Chunk.CHUNK_WIDTH);
+		if (!isChunkInBounds(index))
+			throw new IllegalArgumentException("Chunk " + index + " is outside the world");
+		chunks.put(index, chunk);
+		getLightEngine().lightChunk(chunk);
+	}
+
+	/**
+	 * Puts chunks that have already been generated into the world, like
+	 * {@link #putChunk(Chunk)}, and lights them all together, in parallel if there
+	 * are enough of them
+	 */
+	public void putChunks(Collection<Chunk> newChunks) {
+		for (Chunk chunk : newChunks) {
+			int index = Math.floorDiv(chunk.getX(), Chunk.CHUNK_WIDTH);
+			if (!isChunkInBounds(index))
+				throw new IllegalArgumentException("Chunk " + index + " is outside the world");
+		}
+		for (Chunk chunk : newChunks)
+			chunks.put(Math.floorDiv(chunk.getX(), Chunk.CHUNK_WIDTH), chunk);
+		getLightEngine().lightChunks(newChunks);
+	}
+
+	/** Returns whether a block X coordinate is inside the world */
+	public boolean isInBounds(int blockX) {
+		return unbounded || (blockX >= 0 && blockX < MAP_SIZE_CHUNKS * Chunk.CHUNK_WIDTH);
+	}
+
+	/** Returns whether a chunk index is inside the world */
+	public boolean isChunkInBounds(int index) {
+		return unbounded || (index >= 0 && index < MAP_SIZE_CHUNKS);
+	}
+
+	public boolean isUnbounded() {
+		return unbounded;
+	}
+
+	/** Returns the number of chunks currently in memory */
+	public int getNumResidentChunks() {
+		return chunks.size();
+	}
+
+	public int getMaxResidentChunks() {
+		return maxResidentChunks;
+	}
+
+	/**
+	 * Sets the most chunks an unbounded world will keep in memory. It has to be
+	 * large enough to hold every chunk within the eviction distance of the player.
+	 */
+	public void setMaxResidentChunks(int maxResidentChunks) {
+		this.maxResidentChunks = maxResidentChunks;
+	}
+
+	public int getEvictionDistanceChunks() {
+		return evictionDistanceChunks;
+	}
+
+	public void setEvictionDistanceChunks(int evictionDistanceChunks) {
+		this.evictionDistanceChunks = evictionDistanceChunks;
 	}
 
 	/**
@@ -142,11 +354,21 @@ public class Map implements Serializable {
 	}
 	
 	public void init(int seed) {
+		init(seed, UNBOUNDED_WORLDS);
+	}
+
+	/**
+	 * @param seed      the seed the terrain is generated from
+	 * @param unbounded whether the world should go on forever, rather than being
+	 *                  {@link #MAP_SIZE_CHUNKS} wide
+	 */
+	public void init(int seed, boolean unbounded) {
 		
 		while (seed < 1000000)
 			seed *= 10;
 		
 		this.seed = seed;
+		this.unbounded = unbounded;
 
 		// Instantiate the entity groups
 		entities.add(Entity.ENTITY_GROUP_EVERYTHING, new ArrayList<Entity>());
@@ -157,9 +379,12 @@ public class Map implements Serializable {
 		player.setPosition(MAP_SIZE_CHUNKS*Chunk.CHUNK_WIDTH/2, 100);
 		addEntity(Entity.ENTITY_GROUP_PLAYERS, player);
 
-		// Instantiate the chunks. They are NOT generated upon creation
-		for (int i = 0; i < MAP_SIZE_CHUNKS; i++)
-			chunks.add(i, new Chunk(i * Chunk.CHUNK_WIDTH));
+		// Instantiate the chunks of a bounded world. They are NOT generated upon
+		// creation. Unbounded worlds create their chunks as they are needed.
+		if (!unbounded) {
+			for (int i = 0; i < MAP_SIZE_CHUNKS; i++)
+				chunks.put(i, new Chunk(i * Chunk.CHUNK_WIDTH));
+		}
 
 		// Make sure hitboxes are not showing
 		setShowingHitboxes(false);
@@ -170,21 +395,42 @@ public class Map implements Serializable {
 	public void update() {
 		// Find the furthest left and furthest right chunks that are visible on the
 		// screen
-		chunkRenderMin = (-Game.screen.getScreenOffsetX()) / Block.BLOCK_SIZE / Chunk.CHUNK_WIDTH;
-		chunkRenderMax = (-Game.screen.getScreenOffsetX() + Game.screen.getWidth()) / Block.BLOCK_SIZE
-				/ Chunk.CHUNK_WIDTH + 3;
+		chunkRenderMin = Math.floorDiv(-Game.screen.getScreenOffsetX(), Block.BLOCK_SIZE * Chunk.CHUNK_WIDTH);
+		chunkRenderMax = Math.floorDiv(-Game.screen.getScreenOffsetX() + Game.screen.getWidth(),
+				Block.BLOCK_SIZE * Chunk.CHUNK_WIDTH) + 3;
+
+		// Swap in the chunks that finished generating since the last update
+		if (ASYNC_CHUNK_GENERATION)
+			publishGeneratedChunks();
+
+		// Queue up chunks on the screen and in the direction the player is moving
+		if (ASYNC_CHUNK_GENERATION)
+			getPrefetchPlanner().plan(this, getGenerationService(), player, chunkRenderMin, chunkRenderMax);
 
 		// Update and generate chunks that are visible on the screen
 		for (int x = chunkRenderMin; x < chunkRenderMax; x++) {
-			if (x >= 0 && x < chunks.size() && chunks.get(x) != null) {
-				if (!chunks.get(x).isGenerated())
-					chunks.get(x).generate(seed);
-				chunks.get(x).update(this);
+			Chunk chunk = getOrCreateChunk(x);
+			if (chunk != null) {
+				if (!chunk.isGenerated()) {
+					if (ASYNC_CHUNK_GENERATION)
+						continue;
+					chunk.generate(getTerrainGen());
+					getLightEngine().lightChunk(chunk);
+				}
+				chunk.update(this);
 			}
 		}
 
-		// Update all entities
+		// Drop chunks that are far away from every player
+		if (unbounded)
+			evictChunks();
+
+		// Update all entities, except for ones waiting for their chunk to generate so
+		// that they don't fall through it
 		for (Entity entity : getEntityGroup(Entity.ENTITY_GROUP_EVERYTHING)) {
+			Chunk chunk = getChunkAtBlock((int) Math.floor(entity.getX()));
+			if (chunk != null && !chunk.isGenerated())
+				continue;
 			entity.update(this);
 		}
 
@@ -195,17 +441,30 @@ public class Map implements Serializable {
 		Sky.update();
 
 		// Highlight the block at the mouse
+		highlightedBlock = null;
 		try {
 			if (getBlockAtScreenPos(GameEngine.getMousePos().x, GameEngine.getMousePos().y) != null)
-				getBlockAtScreenPos(GameEngine.getMousePos().x, GameEngine.getMousePos().y).setHighlighted(true);
+				highlightedBlock = getBlockCoordsAtScreenPos(GameEngine.getMousePos().x, GameEngine.getMousePos().y);
 		} catch (NullPointerException e) {
 		}
 	}
 
 	public void render() {
+		renderWorld();
+		renderHud();
+	}
+
+	/**
+	 * Draws the sky, the chunks on the screen and the entities. Once the textures
+	 * and chunk tiles on the screen have been made, this doesn't allocate anything,
+	 * so that drawing frames doesn't make garbage for the garbage collector.
+	 */
+	public void renderWorld() {
+		BandedRenderer bands = isRenderingWithTiles() ? getBandedRenderer() : null;
 
-		// Render the sky
-		Sky.render();
+		// Render the sky. In bands, it is drawn by each band instead.
+		if (bands == null)
+			Sky.render();
 
 		// Set the screen offset based on the player's position
 		Game.screen.setScreenOffsetX(-(int) (player.getX() * Block.BLOCK_SIZE - Game.screen.getWidth() / 2));
@@ -215,41 +474,108 @@ public class Map implements Serializable {
 
 		// Find the furthest left and furthest right chunks that are visible on the
 		// screen
-		chunkRenderMin = (-Game.screen.getScreenOffsetX()) / Block.BLOCK_SIZE / Chunk.CHUNK_WIDTH;
-		chunkRenderMax = (-Game.screen.getScreenOffsetX() + Game.screen.getWidth()) / Block.BLOCK_SIZE
-				/ Chunk.CHUNK_WIDTH + 1;
+		chunkRenderMin = Math.floorDiv(-Game.screen.getScreenOffsetX(), Block.BLOCK_SIZE * Chunk.CHUNK_WIDTH);
+		chunkRenderMax = Math.floorDiv(-Game.screen.getScreenOffsetX() + Game.screen.getWidth(),
+				Block.BLOCK_SIZE * Chunk.CHUNK_WIDTH) + 1;
 
-		// Render chunks that are visible on the screen
+		// Render chunks that are visible on the screen, or get their tiles ready to be
+		// drawn in bands
+		boolean renderedUngeneratedChunk = false;
 		for (int x = chunkRenderMin; x < chunkRenderMax; x++) {
-			if (x >= 0 && x < chunks.size() && chunks.get(x) != null) {
-				chunks.get(x).render(this);
+			if (chunks.get(x) != null) {
+				if (!chunks.get(x).isGenerated()) {
+					getPrefetchPlanner().recordUngeneratedChunkRender();
+					renderedUngeneratedChunk = true;
+				}
+				if (bands == null)
+					chunks.get(x).render(this);
+				else if (chunks.get(x).isGenerated())
+					chunks.get(x).prepareTiles(this);
+			}
+		}
+		if (renderedUngeneratedChunk)
+			getPrefetchPlanner().recordRenderWithUngeneratedChunks();
+
+		if (bands != null) {
+			// Make the sun's sprite before the bands share it
+			Sky.getSunSprite();
+			bands.render(this);
+
+			// Once every band is done, cover up chunks that are still being generated,
+			// and highlight the block under the mouse
+			for (int x = chunkRenderMin; x < chunkRenderMax; x++) {
+				if (chunks.get(x) != null) {
+					if (chunks.get(x).isGenerated())
+						chunks.get(x).renderHighlight(this);
+					else
+						chunks.get(x).render(this);
+				}
 			}
 		}
 
-		// Render entities
-		for (Entity entity : getEntityGroup(Entity.ENTITY_GROUP_EVERYTHING)) {
+		// Render entities, without making an iterator
+		List<Entity> entityList = getEntityGroup(Entity.ENTITY_GROUP_EVERYTHING);
+		for (int i = 0; i < entityList.size(); i++) {
 			try {
-				entity.draw(showHitboxes);
+				entityList.get(i).draw(showHitboxes);
 			} catch (Exception e) {
 				e.printStackTrace();
 			}
 		}
+	}
+
+	/**
+	 * Draws the sky and the generated chunks on the screen onto some of its rows,
+	 * as one band of {@link BandedRenderer}. The chunks' tiles have to be prepared
+	 * first, and this can be called from several threads at once.
+	 * 
+	 * @param top    the first row of the screen to draw on
+	 * @param bottom the row after the last one to draw on
+	 */
+	void renderBand(int top, int bottom) {
+		Sky.render(top, bottom);
+		for (int x = chunkRenderMin; x < chunkRenderMax; x++) {
+			Chunk chunk = chunks.get(x);
+			if (chunk != null && chunk.isGenerated())
+				chunk.renderTiles(this, top, bottom);
+		}
+	}
+
+	/** Draws the information and controls on the top left of the screen */
+	public void renderHud() {
 
-		// Show various information on the top left of the screen
-		Fonts.drawString("Ups:" + Game.getCurrentUps() + " Fps:" + Game.getCurrentFps(), "tinyfont", 2, 2, 0xffff00,
-				Font.ALIGN_LEFT);
-		Fonts.drawString("Seed:" + seed, "tinyfont", 2, 8, 0xffff00, Font.ALIGN_LEFT);
+		// Show various information on the top left of the screen. The lines are built
+		// in the same StringBuilder every frame, rather than making new strings.
+		StringBuilder text = getHudText();
+		text.setLength(0);
+		text.append("Ups:").append(Game.getCurrentUps()).append(" Fps:").append(Game.getCurrentFps());
+		Fonts.drawString(text, "tinyfont", 2, 2, 0xffff00, Font.ALIGN_LEFT);
+		text.setLength(0);
+		text.append("Seed:").append(seed);
+		Fonts.drawString(text, "tinyfont", 2, 8, 0xffff00, Font.ALIGN_LEFT);
 
 		numGeneratedChunks = 0;
-		for (int i = 0; i < chunks.size(); i++)
-			if (chunks.get(i).isGenerated())
+		for (int i = 0; i < chunks.capacity(); i++)
+			if (chunks.valueAt(i) != null && chunks.valueAt(i).isGenerated())
 				numGeneratedChunks++;
-		Fonts.drawString("Generated chunks:" + numGeneratedChunks, "tinyfont", 2, 14, 0xffff00, Font.ALIGN_LEFT);
+		text.setLength(0);
+		text.append("Generated chunks:").append(numGeneratedChunks);
+		Fonts.drawString(text, "tinyfont", 2, 14, 0xffff00, Font.ALIGN_LEFT);
+		if (ASYNC_CHUNK_GENERATION) {
+			text.setLength(0);
+			text.append("Generating chunks:").append(getGenerationService().getNumPending()).append(" Missed:")
+					.append(getPrefetchPlanner().getRendersWithUngeneratedChunks());
+			Fonts.drawString(text, "tinyfont", 2, 20, 0xffff00, Font.ALIGN_LEFT);
+		}
 
-		Fonts.drawString("Player X: " + Util.formatDoubleForString(player.getX()), "tinyfont", 2, 29, 0xffff00,
-				Font.ALIGN_LEFT);
-		Fonts.drawString("Player Y: " + Util.formatDoubleForString(player.getY()), "tinyfont", 2, 35, 0xffff00,
-				Font.ALIGN_LEFT);
+		text.setLength(0);
+		text.append("Player X: ");
+		Util.appendDoubleForString(text, player.getX());
+		Fonts.drawString(text, "tinyfont", 2, 29, 0xffff00, Font.ALIGN_LEFT);
+		text.setLength(0);
+		text.append("Player Y: ");
+		Util.appendDoubleForString(text, player.getY());
+		Fonts.drawString(text, "tinyfont", 2, 35, 0xffff00, Font.ALIGN_LEFT);
 
 		Fonts.drawString("Space: Toggle flying", "tinyfont", 2, 48, 0xffff00, Font.ALIGN_LEFT);
 		Fonts.drawString("Movement:WASD/Arrows", "tinyfont", 2, 54, 0xffff00, Font.ALIGN_LEFT);
@@ -261,7 +587,7 @@ public class Map implements Serializable {
 		// Show the selected block on the top left menu
 		Fonts.drawString("Current block:", "tinyfont", 2, 88, 0xffff00, Font.ALIGN_LEFT);
 		Graphics.drawImage(59, 86, Block.BLOCK_SIZE, Block.BLOCK_SIZE,
-				BlockFactory.createBlock(0, 0, Blocks.placeBlockList.get(currentPlaceBlockIndex)).getTexture());
+				BlockFactory.getBlock(Blocks.placeBlockList.get(currentPlaceBlockIndex)).getTexture());
 
 		Fonts.drawString("Left click: Remove", "tinyfont", 2, 95, 0xffff00, Font.ALIGN_LEFT);
 		Fonts.drawString("Right click: Place", "tinyfont", 2, 101, 0xffff00, Font.ALIGN_LEFT);
@@ -280,14 +606,24 @@ public class Map implements Serializable {
 		this.showHitboxes = showHitboxes;
 	}
 
+	/** Returns the coordinates of the block under the mouse, or null if there isn't one */
+	public Point getHighlightedBlock() {
+		return highlightedBlock;
+	}
+
+	/** Returns whether the block at a specified coordinate is under the mouse */
+	public boolean isHighlighted(int x, int y) {
+		return highlightedBlock != null && highlightedBlock.x == x && highlightedBlock.y == y;
+	}
+
 	/** Returns the block at a specific position on the screen */
 	public Block getBlockAtScreenPos(int screenX, int screenY) {
 		// Inverse of x coordinate from Block.draw
-		int blockX = (int) ((screenX - Game.screen.getScreenOffsetX()) / Block.BLOCK_SIZE);
+		int blockX = Math.floorDiv(screenX - Game.screen.getScreenOffsetX(), Block.BLOCK_SIZE);
 		// Inverse of y coordinate from Block.draw
 		int blockY = (int) ((-screenY + Game.screen.getHeight() + Game.screen.getScreenOffsetY()) / Block.BLOCK_SIZE);
 
-		if (blockX >= 0 && blockX < MAP_SIZE_CHUNKS * Chunk.CHUNK_WIDTH && blockY >= 0 && blockY < Map.MAP_HEIGHT) {
+		if (blockY >= 0 && blockY < Map.MAP_HEIGHT && getChunkAtBlock(blockX) != null) {
 			return getChunkAtBlock(blockX).getBlock(blockX, blockY);
 		}
 		return null;
@@ -296,11 +632,11 @@ public class Map implements Serializable {
 	/** Returns the block at a specific position on the screen */
 	public Point getBlockCoordsAtScreenPos(int screenX, int screenY) {
 		// Inverse of x coordinate from Block.draw
-		int blockX = (int) ((screenX - Game.screen.getScreenOffsetX()) / Block.BLOCK_SIZE);
+		int blockX = Math.floorDiv(screenX - Game.screen.getScreenOffsetX(), Block.BLOCK_SIZE);
 		// Inverse of y coordinate from Block.draw
 		int blockY = (int) ((-screenY + Game.screen.getHeight() + Game.screen.getScreenOffsetY()) / Block.BLOCK_SIZE);
 
-		if (blockX >= 0 && blockX < MAP_SIZE_CHUNKS * Chunk.CHUNK_WIDTH && blockY >= 0 && blockY < Map.MAP_HEIGHT) {
+		if (isInBounds(blockX) && blockY >= 0 && blockY < Map.MAP_HEIGHT) {
 			return new Point(blockX, blockY);
 		}
 		return null;
@@ -308,15 +644,29 @@ public class Map implements Serializable {
 
 	/** Gets the block at a specified coordinate */
 	public Block getBlock(int x, int y) {
-		if (x >= 0 && x < MAP_SIZE_CHUNKS * Chunk.CHUNK_WIDTH && y >= 0 && y < MAP_HEIGHT)
-			return getChunkAtBlock(x).getBlock(x, y);
+		if (y >= 0 && y < MAP_HEIGHT) {
+			Chunk chunk = getChunkAtBlock(x);
+			if (chunk != null)
+				return chunk.getBlock(x, y);
+		}
 		return null;
 	}
 
-	/** Sets the block at a specified coordinate */
+	/**
+	 * Sets the block at a specified coordinate. Nothing happens if the chunk isn't
+	 * in memory or hasn't been generated yet.
+	 */
 	public void setBlock(Block block, int x, int y) {
-		if (x >= 0 && x < MAP_SIZE_CHUNKS * Chunk.CHUNK_WIDTH && y >= 0 && y < MAP_HEIGHT)
-			getChunkAtBlock(x).setBlock(block, x, y);
+		if (y >= 0 && y < MAP_HEIGHT) {
+			Chunk chunk = getChunkAtBlock(x);
+			if (chunk != null && chunk.isGenerated()) {
+				Block oldBlock = chunk.getBlock(x, y);
+				int oldColumnTop = chunk.getColumnTop(Math.floorMod(x, Chunk.CHUNK_WIDTH));
+				chunk.setBlock(block, x, y);
+				chunk.setEdited(true);
+				getLightEngine().blockChanged(chunk, x, y, oldBlock, oldColumnTop);
+			}
+		}
 	}
 
 	public void cyclePlaceBlockIndexBack() {
@@ -331,8 +681,246 @@ public class Map implements Serializable {
 			currentPlaceBlockIndex = 0;
 	}
 
-	public float getLightLevel(int x, int y) {
-		return getChunkAtBlock(x).getLightLevel(x, y);
+	/**
+	 * Returns the height of the highest block in a column, or -1 if the column is
+	 * empty or its chunk isn't in memory or generated yet
+	 */
+	public int getColumnTop(int x) {
+		Chunk chunk = getChunkAtBlock(x);
+		if (chunk == null || !chunk.isGenerated())
+			return -1;
+		return chunk.getColumnTop(Math.floorMod(x, Chunk.CHUNK_WIDTH));
+	}
+
+	/** Returns whether there are no blocks above a coordinate */
+	public boolean isOpenToSky(int x, int y) {
+		return y >= getColumnTop(x);
+	}
+
+	/**
+	 * Returns the light level at a coordinate, or 0 if the chunk isn't in memory.
+	 * This is the brighter of the light from blocks and the light from the sky,
+	 * dimmed by {@link #getSkyBrightness()}.
+	 */
+	public int getLightLevel(int x, int y) {
+		Chunk chunk = getChunkAtBlock(x);
+		if (chunk == null)
+			return 0;
+		return Math.max(chunk.getSkyLight(x, y) * getSkyBrightness() / LightEngine.MAX_LIGHT_LEVEL,
+				chunk.getBlockLight(x, y));
+	}
+
+	/** Returns how bright the sky is, from 0 to {@link LightEngine#MAX_LIGHT_LEVEL} */
+	public int getSkyBrightness() {
+		return LightEngine.MAX_LIGHT_LEVEL - skyDarkness;
+	}
+
+	/**
+	 * Sets how bright the sky is, from 0 for a pitch black night to
+	 * {@link LightEngine#MAX_LIGHT_LEVEL} for full daylight. Only the light from
+	 * the sky is dimmed, so nothing has to be lit again.
+	 */
+	public void setSkyBrightness(int skyBrightness) {
+		skyDarkness = LightEngine.MAX_LIGHT_LEVEL - Math.max(0, Math.min(skyBrightness, LightEngine.MAX_LIGHT_LEVEL));
+	}
+
+	/**
+	 * Evicts chunks that are further than {@link #evictionDistanceChunks} from
+	 * every player, and then the furthest remaining chunks until there are no more
+	 * than {@link #maxResidentChunks}. The blocks the player changed are set aside
+	 * in {@link #evictedChunkEdits}, and the rest are generated again if they are
+	 * needed. Nothing is evicted while there are no players.
+	 */
+	private void evictChunks() {
+		List<Entity> players = getEntityGroup(Entity.ENTITY_GROUP_PLAYERS);
+
+		// With nobody to measure from, there's no telling which chunks are far away
+		if (players.isEmpty())
+			return;
+
+		if (evictionKeys.length < chunks.capacity())
+			evictionKeys = new long[chunks.capacity()];
+
+		// Collect every chunk's distance first, since removing entries moves them
+		// around in the map. Chunk indices fit in an int, so each one is packed
+		// under its distance, and sorting puts the furthest chunks at the end.
+		int numChunks = 0;
+		for (int slot = 0; slot < chunks.capacity(); slot++) {
+			if (chunks.valueAt(slot) != null) {
+				long index = chunks.keyAt(slot);
+				long distance = distanceToNearestPlayer(players, index);
+				evictionKeys[numChunks++] = distance << 32 | (index & 0xFFFFFFFFL);
+			}
+		}
+		Arrays.sort(evictionKeys, 0, numChunks);
+
+		// Evict the chunks that are too far away, and then the furthest ones if there
+		// are still too many
+		for (int i = numChunks - 1; i >= 0; i--) {
+			int distance = (int) (evictionKeys[i] >>> 32);
+			if (distance <= evictionDistanceChunks && chunks.size() <= maxResidentChunks)
+				break;
+			evictChunk((int) evictionKeys[i]);
+		}
+	}
+
+	private void evictChunk(long index) {
+		if (generationService != null)
+			generationService.cancel((int) index);
+
+		// Keep only the blocks the player changed, by generating the chunk again and
+		// comparing them
+		Chunk chunk = chunks.remove(index);
+		if (chunk != null && chunk.isEdited()) {
+			ChunkEdits edits = ChunkEdits.diff(chunk, getTerrainGen().generateChunk(chunk.getX()));
+			if (edits != null)
+				evictedChunkEdits.put(index, edits);
+		}
+	}
+
+	/** Returns the service that generates this map's chunks in the background */
+	public ChunkGenerationService getGenerationService() {
+		if (generationService == null)
+			generationService = new ChunkGenerationService(getTerrainGen());
+		return generationService;
+	}
+
+	/** Returns the generator for this world's terrain, which is built from its seed */
+	public TerrainGen getTerrainGen() {
+		if (terrainGen == null || terrainGen.getSeed() != seed)
+			terrainGen = new TerrainGen(seed);
+		return terrainGen;
+	}
+
+	/**
+	 * Returns the height of the generated ground in a column, without generating
+	 * the chunk it is in. Blocks the player has placed or broken aren't counted.
+	 */
+	public int getSurfaceHeight(int x) {
+		return getTerrainGen().getHeightmap().getHeight(x);
+	}
+
+	/**
+	 * Returns the pictures of chunk sections that chunks are drawn from. Enough are
+	 * kept for every section on the screen to be prepared at once for drawing in
+	 * bands, even on large screens.
+	 */
+	public ChunkTileCache getChunkTiles() {
+		if (chunkTiles == null) {
+			int maxTiles = ChunkTileCache.DEFAULT_MAX_TILES;
+			if (Game.screen != null)
+				maxTiles = Math.max(maxTiles,
+						2 * ChunkTileCache.tilesToCover(Game.screen.getWidth(), Game.screen.getHeight()));
+			chunkTiles = new ChunkTileCache(maxTiles);
+		}
+		return chunkTiles;
+	}
+
+	/**
+	 * Returns what draws the world in bands on several threads, or null if it is
+	 * drawn on the game thread
+	 */
+	private BandedRenderer getBandedRenderer() {
+		int threads = getRenderThreads();
+		if (bandedRenderer != null && bandedRenderer.getThreads() != threads) {
+			bandedRenderer.shutdown();
+			bandedRenderer = null;
+		}
+		if (bandedRenderer == null && threads > 1)
+			bandedRenderer = new BandedRenderer(threads);
+		return bandedRenderer;
+	}
+
+	/**
+	 * Returns the number of threads the world is drawn on, each one drawing a
+	 * horizontal band of the screen. With 1, it is drawn on the game thread.
+	 */
+	public int getRenderThreads() {
+		return renderThreads > 0 ? renderThreads : RENDER_THREADS;
+	}
+
+	/**
+	 * Sets the number of threads the world is drawn on. Drawing in bands needs the
+	 * chunks to be drawn from tiles, so with {@link #setRenderingWithTiles(boolean)}
+	 * turned off, it is always drawn on the game thread.
+	 */
+	public void setRenderThreads(int renderThreads) {
+		this.renderThreads = Math.max(1, renderThreads);
+	}
+
+	/** Returns the StringBuilder that lines of {@link #renderHud()} are built in */
+	private StringBuilder getHudText() {
+		if (hudText == null)
+			hudText = new StringBuilder();
+		return hudText;
+	}
+
+	/** Returns whether chunks are drawn from {@link #getChunkTiles()}, rather than a block at a time */
+	public boolean isRenderingWithTiles() {
+		return renderingWithTiles != null ? renderingWithTiles : CHUNK_TILES;
+	}
+
+	public void setRenderingWithTiles(boolean renderingWithTiles) {
+		this.renderingWithTiles = renderingWithTiles;
+	}
+
+	/** Returns the engine that spreads light through this map's chunks */
+	public LightEngine getLightEngine() {
+		if (lightEngine == null)
+			lightEngine = new LightEngine(this);
+		return lightEngine;
+	}
+
+	/**
+	 * Returns the planner that decides which chunks are generated ahead of time.
+	 * Its radius and per-tick budget can be changed through it.
+	 */
+	public ChunkPrefetchPlanner getPrefetchPlanner() {
+		// Maps saved before the planner existed won't have one
+		if (prefetchPlanner == null)
+			prefetchPlanner = new ChunkPrefetchPlanner();
+		return prefetchPlanner;
+	}
+
+	/**
+	 * Replaces ungenerated chunks with the ones that have finished generating in
+	 * the background. This is done at the start of an update, so a chunk never
+	 * changes partway through one.
+	 */
+	private void publishGeneratedChunks() {
+		ChunkGenerationService service = getGenerationService();
+		if (publishedChunks == null)
+			publishedChunks = new ArrayList<Chunk>();
+		Chunk generated;
+		while ((generated = service.pollGenerated()) != null) {
+			int index = Math.floorDiv(generated.getX(), Chunk.CHUNK_WIDTH);
+
+			// Drop chunks that were evicted or generated some other way in the meantime
+			Chunk current = chunks.get(index);
+			if (current != null && !current.isGenerated()) {
+				chunks.put(index, generated);
+				publishedChunks.add(generated);
+			}
+		}
+
+		// Light them all together, which is done in parallel when lots finish at once
+		if (!publishedChunks.isEmpty()) {
+			getLightEngine().lightChunks(publishedChunks);
+			publishedChunks.clear();
+		}
+	}
+
+	/**
+	 * Returns the distance, in chunks, between a chunk and the nearest player, or
+	 * {@link Integer#MAX_VALUE} if there are no players
+	 */
+	private int distanceToNearestPlayer(List<Entity> players, long index) {
+		int nearest = Integer.MAX_VALUE;
+		for (int i = 0; i < players.size(); i++) {
+			int playerChunk = Math.floorDiv((int) Math.floor(players.get(i).getX()), Chunk.CHUNK_WIDTH);
+			nearest = Math.min(nearest, (int) Math.abs(index - playerChunk));
+		}
+		return nearest;
 	}
 
 }
\ No newline at end of file
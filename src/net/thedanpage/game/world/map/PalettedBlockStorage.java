@@ -0,0 +1,122 @@
+package net.thedanpage.game.world.map;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+import net.thedanpage.game.world.map.block.Block;
+
+/**
+ * A compact way of storing the blocks of a {@link Chunk}. Instead of keeping a
+ * reference for every cell, it keeps a small palette of the shared blocks that
+ * appear in the chunk, and a packed array of palette indices. Each index takes
+ * up 4, 8 or 16 bits depending on how large the palette is, so a chunk made of
+ * a handful of block types only needs a few kilobytes.
+ *
+ * @author Dan
+ */
+public class PalettedBlockStorage implements Serializable {
+
+	private static final long serialVersionUID = 2874102349915706201L;
+
+	/** The number of bits in each word of {@link #data} */
+	private static final int WORD_BITS = 64;
+
+	/** The largest number of bits a single palette index can take up */
+	private static final int MAX_BITS_PER_CELL = 16;
+
+	/** The number of cells being stored */
+	private final int size;
+
+	/**
+	 * The blocks used in this storage. Index 0 is always air, which is represented
+	 * by <code>null</code>.
+	 */
+	private final List<Block> palette = new ArrayList<Block>();
+
+	/** The number of bits used for each palette index: 4, 8 or 16 */
+	private int bitsPerCell = 4;
+
+	/** The packed palette indices, stored without spanning two words */
+	private long[] data;
+
+	/**
+	 * @param size the number of cells to store
+	 */
+	public PalettedBlockStorage(int size) {
+		this.size = size;
+		this.palette.add(null);
+		this.data = new long[wordsFor(size, bitsPerCell)];
+	}
+
+	private static int wordsFor(int size, int bitsPerCell) {
+		int cellsPerWord = WORD_BITS / bitsPerCell;
+		return (size + cellsPerWord - 1) / cellsPerWord;
+	}
+
+	/** Returns the block in a cell, or null if it is air */
+	public Block get(int index) {
+		return palette.get(getPaletteIndex(index));
+	}
+
+	/** Sets the block in a cell, with null being air */
+	public void set(int index, Block block) {
+		int paletteIndex = palette.indexOf(block);
+
+		// Add the block to the palette, widening the indices if they no longer fit
+		if (paletteIndex < 0) {
+			paletteIndex = palette.size();
+			palette.add(block);
+			if (paletteIndex >= 1 << bitsPerCell)
+				resize(bitsPerCell * 2);
+		}
+
+		setPaletteIndex(index, paletteIndex);
+	}
+
+	/** Returns the number of cells being stored */
+	public int size() {
+		return size;
+	}
+
+	/** Returns the number of entries in the palette, including air */
+	public int getPaletteSize() {
+		return palette.size();
+	}
+
+	/** Returns the number of bits each cell currently takes up */
+	public int getBitsPerCell() {
+		return bitsPerCell;
+	}
+
+	private int getPaletteIndex(int index) {
+		int cellsPerWord = WORD_BITS / bitsPerCell;
+		int shift = (index % cellsPerWord) * bitsPerCell;
+		return (int) ((data[index / cellsPerWord] >>> shift) & ((1L << bitsPerCell) - 1));
+	}
+
+	private void setPaletteIndex(int index, int paletteIndex) {
+		int cellsPerWord = WORD_BITS / bitsPerCell;
+		int shift = (index % cellsPerWord) * bitsPerCell;
+		long mask = ((1L << bitsPerCell) - 1) << shift;
+		int word = index / cellsPerWord;
+		data[word] = (data[word] & ~mask) | (((long) paletteIndex << shift) & mask);
+	}
+
+	/** Repacks every cell using a larger number of bits */
+	private void resize(int newBitsPerCell) {
+		if (newBitsPerCell > MAX_BITS_PER_CELL)
+			throw new IllegalStateException("A chunk cannot contain more than " + (1 << MAX_BITS_PER_CELL)
+					+ " different blocks");
+
+		int[] indices = new int[size];
+		for (int i = 0; i < size; i++)
+			indices[i] = getPaletteIndex(i);
+
+		bitsPerCell = newBitsPerCell;
+		data = new long[wordsFor(size, bitsPerCell)];
+		for (int i = 0; i < size; i++)
+			setPaletteIndex(i, indices[i]);
+	}
+
+}
@@ -3,6 +3,7 @@ package net.thedanpage.game.world.map;
 import net.thedanpage.game.Game;
 import net.thedanpage.game.graphics.AnimatedTexture;
 import net.thedanpage.game.graphics.Graphics;
+import net.thedanpage.game.graphics.Sprite;
 import net.thedanpage.game.graphics.Textures;
 
 public class Sky {
@@ -11,10 +12,10 @@ public class Sky {
 	private static int sunTextureState = 1;
 
 	/**
-	 * Fill the screen with a sky blue color
+	 * Fill some rows of the screen with a sky blue color
 	 */
-	private static void fillSky() {
-		Game.screen.fillBG(0x00bfff);
+	private static void fillSky(int top, int bottom) {
+		Game.screen.fillBG(0x00bfff, top, bottom);
 	}
 
 	/**
@@ -23,20 +24,18 @@ public class Sky {
 	 * moves more slowly than the world going by, creating the effect of it being
 	 * off in the distance.
 	 */
-	private static void drawSun() {
-		if (sunFloatAnimationState == 0 || sunFloatAnimationState == 2) {
-			Graphics.drawImage(Game.screen.getScreenOffsetX() / 10 + 180,
-					Game.screen.getScreenOffsetY() / 6 + Game.screen.getHeight() - 120, 25, 25,
-					((AnimatedTexture) Textures.getTexture("sun")).getPixels(sunTextureState));
-		} else if (sunFloatAnimationState == 1) {
-			Graphics.drawImage(Game.screen.getScreenOffsetX() / 10 + 180,
-					Game.screen.getScreenOffsetY() / 6 + Game.screen.getHeight() - 121, 25, 25,
-					((AnimatedTexture) Textures.getTexture("sun")).getPixels(sunTextureState));
-		} else {
-			Graphics.drawImage(Game.screen.getScreenOffsetX() / 10 + 180,
-					Game.screen.getScreenOffsetY() / 6 + Game.screen.getHeight() - 119, 25, 25,
-					((AnimatedTexture) Textures.getTexture("sun")).getPixels(sunTextureState));
-		}
+	private static void drawSun(int top, int bottom) {
+		int y = Game.screen.getScreenOffsetY() / 6 + Game.screen.getHeight() - 120;
+		if (sunFloatAnimationState == 1)
+			y--;
+		else if (sunFloatAnimationState == 3)
+			y++;
+		Graphics.drawSprite(Game.screen.getScreenOffsetX() / 10 + 180, y, getSunSprite(), top, bottom);
+	}
+
+	/** Returns the sun's texture for its current animation frame */
+	public static Sprite getSunSprite() {
+		return ((AnimatedTexture) Textures.getTexture("sun")).getSprite(sunTextureState);
 	}
 
 	public static void update() {
@@ -56,8 +55,19 @@ public class Sky {
 	}
 
 	public static void render() {
-		fillSky();
-		drawSun();
+		render(0, Game.screen.getHeight());
+	}
+
+	/**
+	 * Draws the sky onto some rows of the screen, so that several threads can
+	 * draw it in bands at once
+	 * 
+	 * @param top    the first row of the screen to draw on
+	 * @param bottom the row after the last one to draw on
+	 */
+	public static void render(int top, int bottom) {
+		fillSky(top, bottom);
+		drawSun(top, bottom);
 	}
 
 }
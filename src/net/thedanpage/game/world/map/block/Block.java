@@ -4,15 +4,22 @@ import java.awt.geom.Rectangle2D;
 import java.io.Serializable;
 
 import net.thedanpage.game.Game;
-import net.thedanpage.game.framework.Util;
 import net.thedanpage.game.graphics.AnimatedTexture;
 import net.thedanpage.game.graphics.Graphics;
+import net.thedanpage.game.graphics.Sprite;
 import net.thedanpage.game.graphics.Texture;
 import net.thedanpage.game.graphics.Textures;
-import net.thedanpage.game.world.entity.Entity;
 import net.thedanpage.game.world.map.Map;
 
-public class Block implements Comparable<Block>, Serializable {
+/**
+ * A type of block. Blocks are shared between every cell in the world that holds
+ * the same type, so they are immutable and don't know their own position. Get
+ * them from {@link BlockFactory#getBlock(String)}, and pass the coordinates of
+ * the cell in whenever they are needed.
+ * 
+ * @author Dan
+ */
+public class Block implements Serializable {
 
 	private static final long serialVersionUID = 6448312362433846402L;
 
@@ -23,76 +30,57 @@ public class Block implements Comparable<Block>, Serializable {
 	 */
 	public static final int BLOCK_SIZE = 8;
 
-	/** The block's X coordinate */
-	private int x;
-
-	/** The block's Y coordinate */
-	private int y;
-
 	/** Type of block */
-	private String blockType = "null";
-
-	/** Block texture name */
-	private String texture = "block_null";
+	private final String blockType;
 
-	/** Whether the block is a fluid or not */
-	private boolean isFluid = false;
-	
-	/** Whether the block is a light source or not */
-	private boolean isLightSource = false;
-
-	/** Whether the block is highlighted or not, used for mouseovers */
-	private boolean highlighted = false;
-
-	/** Stores the last calculation of the distanceToEntity() function */
-	private double distToLastEntity;
+	/** The block's ID, used to look up its properties in {@link Blocks} */
+	private final int id;
 
 	/**
 	 * How much light will be subtracted when it obtains light values from adjacent
 	 * blocks.
 	 */
-	private float subtractLighting = 0.07f;
-
-	Block(int x, int y, String blockName) {
-		this.x = x;
-		this.y = y;
+	private final float subtractLighting = 0.07f;
 
+	Block(String blockName) {
 		this.blockType = blockName;
-		this.texture = (String) Blocks.getProperty(blockName, "texture");
-		this.isFluid = (Boolean) Blocks.getProperty(blockName, "isFluid");
-		this.isLightSource = (Boolean) Blocks.getProperty(blockName, "isLightSource");
+		this.id = Blocks.getId(blockName);
 	}
 
-	Texture textureTemp;
-
-	/** Returns the block's texture in an RGB integer array */
+	/**
+	 * Returns the block's texture in an RGB integer array. The array is shared
+	 * with the texture, so it must not be changed.
+	 */
 	public int[] getTexture() {
-		textureTemp = Textures.getBlockTexture(this.texture);
-		if (textureTemp instanceof AnimatedTexture) {
-			return (int[]) Util.deepClone(((AnimatedTexture) textureTemp)
-					.getPixels(Blocks.getBlockAnimTime() % ((AnimatedTexture) textureTemp).getNumFrames()));
-		}
+		Texture textureTemp = Textures.getBlockTexture(Blocks.textureIndex[id]);
+		if (textureTemp instanceof AnimatedTexture)
+			return ((AnimatedTexture) textureTemp).getPixels(getAnimationFrame());
 		return textureTemp.getPixels();
 	}
 
-	public String getBlockType() {
-		return blockType;
+	/** Returns whether the block's texture is animated */
+	public boolean isAnimated() {
+		return Textures.getBlockTexture(Blocks.textureIndex[id]) instanceof AnimatedTexture;
 	}
 
-	public boolean isFluid() {
-		return isFluid;
+	/** Returns the frame of the block's texture that is showing now, or 0 if it isn't animated */
+	public int getAnimationFrame() {
+		Texture texture = Textures.getBlockTexture(Blocks.textureIndex[id]);
+		if (texture instanceof AnimatedTexture)
+			return Blocks.getBlockAnimTime() % ((AnimatedTexture) texture).getNumFrames();
+		return 0;
 	}
 
-	public int getX() {
-		return x;
+	public String getBlockType() {
+		return blockType;
 	}
 
-	public int getY() {
-		return y;
+	public int getId() {
+		return id;
 	}
 
-	public boolean isHighlighted() {
-		return highlighted;
+	public boolean isFluid() {
+		return Blocks.isFluid[id];
 	}
 
 	public float getSubtractLighting() {
@@ -100,43 +88,32 @@ public class Block implements Comparable<Block>, Serializable {
 	}
 
 	public boolean isLightSource() {
-		return isLightSource;
+		return Blocks.isLightSource[id];
 	}
 
-	/** Returns the block's hitbox */
-	public Rectangle2D.Double getBounds() {
-		return new Rectangle2D.Double(this.x, this.y, 1, 1);
+	/** Returns the hitbox of the block at a specified coordinate */
+	public Rectangle2D.Double getBounds(int x, int y) {
+		return new Rectangle2D.Double(x, y, 1, 1);
 	}
 
-	public void update(Map map) {
-		highlighted = false;
+	/** Updates the block at a specified coordinate */
+	public void update(Map map, int x, int y) {
 	}
 
-	/** Draws the block to the screen, accounting for the screen offset */
-	public void draw(Map map) {
-		Graphics.drawImage(x * BLOCK_SIZE + Game.screen.getScreenOffsetX(),
-				Game.screen.getHeight() - y * BLOCK_SIZE - BLOCK_SIZE + Game.screen.getScreenOffsetY(), BLOCK_SIZE,
-				BLOCK_SIZE, Graphics.applyLighting(getTexture(), map.getChunkAtBlock(x).getLightLevel(x, y)));
+	/** Draws the block at a specified coordinate, accounting for the screen offset */
+	public void draw(Map map, int x, int y) {
+		Sprite sprite = Textures.getLitBlockSprite(Blocks.textureIndex[id], getAnimationFrame(),
+				map.getLightLevel(x, y));
+		Graphics.drawSprite(x * BLOCK_SIZE + Game.screen.getScreenOffsetX(),
+				Game.screen.getHeight() - y * BLOCK_SIZE - BLOCK_SIZE + Game.screen.getScreenOffsetY(), sprite);
 	}
 
-	public void setHighlighted(boolean highlighted) {
-		this.highlighted = highlighted;
-	}
-
-	public void setDistToEntity(Entity e) {
-		distToLastEntity = Math.sqrt(Math.exp((getX() + .5) - (e.getX() + e.getWidth() / 2))
-				+ Math.exp((getY() + .5) - (e.getY() + e.getWidth() / 2)));
-	}
-
-	public double getDistToLastEntity() {
-		return distToLastEntity;
-	}
-
-	@Override
-	public int compareTo(Block b) {
-		// We want to scale the distance up so that it's more precise, since compareTo
-		// only accepts ints
-		return (int) (b.getDistToLastEntity() - this.getDistToLastEntity()) * 10000;
+	/**
+	 * Blocks are shared, so make sure a deserialized block is replaced by the one
+	 * in {@link BlockFactory}
+	 */
+	protected Object readResolve() {
+		return BlockFactory.getBlock(blockType);
 	}
 
 }
@@ -1,14 +1,62 @@
 package net.thedanpage.game.world.map.block;
 
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A registry of the shared {@link Block} instances. Every block type has exactly
+ * one instance, and fluids have one for each direction they can flow in from,
+ * so filling the world with blocks doesn't create any new objects.
+ * 
+ * @author Dan
+ *
+ */
 public class BlockFactory {
 	
-	public static Block createBlock(int x, int y, String blockName) {
-		if ((boolean) Blocks.getProperty(blockName, "isFluid") == true) {
-			return new FluidBlock(x,y,blockName,FluidBlock.SOURCE_DIR_ORIGIN);
-		}
-		else {
-			return new Block(x,y,blockName);
+	/** The shared instance of each block type, by name */
+	private static Map<String, Block> blocks = new HashMap<String, Block>();
+	
+	/** The shared instance of each block type, indexed by ID. Air is null. */
+	private static Block[] blocksById;
+	
+	/** The shared instances of each fluid, indexed by ID and then by source direction */
+	private static FluidBlock[][] fluidBlocksById;
+	
+	/** Creates the shared instance of each block ID in {@link Blocks} */
+	static void init() {
+		blocksById = new Block[Blocks.getNumIds()];
+		fluidBlocksById = new FluidBlock[Blocks.getNumIds()][];
+		
+		for (int id = 1; id < Blocks.getNumIds(); id++) {
+			String blockName = Blocks.blockNames[id];
+			
+			if (Blocks.isFluid[id]) {
+				FluidBlock[] directions = new FluidBlock[FluidBlock.NUM_SOURCE_DIRS];
+				for (int dir = 0; dir < directions.length; dir++)
+					directions[dir] = new FluidBlock(blockName, dir);
+				fluidBlocksById[id] = directions;
+				blocksById[id] = directions[FluidBlock.SOURCE_DIR_ORIGIN];
+			}
+			else {
+				blocksById[id] = new Block(blockName);
+			}
+			blocks.put(blockName, blocksById[id]);
 		}
 	}
+	
+	/** Returns the shared instance of a block. Fluids are returned as their source block. */
+	public static Block getBlock(String blockName) {
+		return blocks.get(blockName);
+	}
+	
+	/** Returns the shared instance of a block given its ID, or null for air */
+	public static Block getBlock(int id) {
+		return blocksById[id];
+	}
+	
+	/** Returns the shared instance of a fluid that flowed in from a given direction */
+	public static FluidBlock getFluidBlock(int id, int sourceDir) {
+		return fluidBlocksById[id][sourceDir];
+	}
 
 }
@@ -7,27 +7,51 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Map.Entry;
 
 import org.json.simple.JSONObject;
 import org.json.simple.parser.JSONParser;
 
 import net.thedanpage.game.Game;
 import net.thedanpage.game.framework.Util;
-import net.thedanpage.game.framework.gamestate.WorldState;
-import net.thedanpage.game.world.entity.Entity;
 
 /**
  * A class for managing and loading blocks and their properties. Block
- * properties are located in <code>resources/blockproperties.json</code>
+ * properties are located in <code>resources/blockproperties.json</code>, and
+ * are compiled into a dense range of integer IDs when they are loaded. Each
+ * property is kept in its own array indexed by ID, so code that runs every
+ * update or frame should use those arrays rather than looking blocks up by name.
  * 
  * @author Dan
  *
  */
 public class Blocks {
 
-	/** A Hashmap containing a list of blocks and their properties */
-	public static Map<String, Object[]> blockProperties = new HashMap<String, Object[]>();
+	/** The ID of air, which is represented by <code>null</code> in the world */
+	public static final int AIR = 0;
+
+	/** The name of each block, indexed by ID */
+	public static String[] blockNames;
+
+	/** Block IDs by name, only used when loading data and for the UI */
+	private static Map<String, Integer> blockIds = new HashMap<String, Integer>();
+
+	/** Whether each block is a fluid, indexed by ID */
+	public static boolean[] isFluid;
+
+	/** Whether each block is a light source, indexed by ID */
+	public static boolean[] isLightSource;
+
+	/** The translucency of each block's translucency group, indexed by ID */
+	public static float[] translucency;
+
+	/**
+	 * The index of each block's texture in {@link #blockTextureNames}, indexed by
+	 * ID. Air has no texture and is set to -1.
+	 */
+	public static int[] textureIndex;
+
+	/** The name of every block texture, indexed by texture index */
+	public static List<String> blockTextureNames = new ArrayList<String>();
 
 	/**
 	 * A hashmap containing a list of translucencies for each block group, defined
@@ -51,9 +75,15 @@ public class Blocks {
 	/** A list containing all blocks that can be placed */
 	public static List<String> placeBlockList = new ArrayList<String>();
 
-	/** Loads block properties from <code>resources/blockproperties.json</code> */
+	/**
+	 * Loads block properties from <code>resources/blockproperties.json</code>. IDs
+	 * are only assigned once, so calling this again does nothing.
+	 */
 	@SuppressWarnings("unchecked")
 	public static void loadProperties() {
+		if (blockNames != null)
+			return;
+
 		// Load translucency groups
 		try {
 
@@ -75,35 +105,76 @@ public class Blocks {
 
 			JSONObject jsonObject = (JSONObject) parser.parse(reader);
 
-			jsonObject.keySet().forEach(key -> {
-				String texture = (String) ((JSONObject) jsonObject.get(key)).get("texture");
-				boolean isFluid = (Boolean) ((JSONObject) jsonObject.get(key)).get("isFluid");
-				boolean isLightSource = (Boolean) ((JSONObject) jsonObject.get(key)).get("isLightSource");
-				String translucencyGroup = (String) ((JSONObject) jsonObject.get(key)).get("translucencyGroup");
-				blockProperties.put((String) key,
-						new Object[] { texture, isFluid, blockTranslucencies.get(translucencyGroup), isLightSource });
-			});
+			// Sort the names so that every run gives each block the same ID
+			List<String> names = new ArrayList<String>(jsonObject.keySet());
+			Collections.sort(names);
+
+			int numBlocks = names.size() + 1;
+			blockNames = new String[numBlocks];
+			isFluid = new boolean[numBlocks];
+			isLightSource = new boolean[numBlocks];
+			translucency = new float[numBlocks];
+			textureIndex = new int[numBlocks];
+
+			// Air always takes the first ID
+			blockNames[AIR] = "air";
+			translucency[AIR] = blockTranslucencies.get("air");
+			textureIndex[AIR] = -1;
+
+			for (int id = 1; id < numBlocks; id++) {
+				String name = names.get(id - 1);
+				JSONObject properties = (JSONObject) jsonObject.get(name);
+
+				String texture = (String) properties.get("texture");
+				if (!blockTextureNames.contains(texture))
+					blockTextureNames.add(texture);
+
+				blockNames[id] = name;
+				blockIds.put(name, id);
+				isFluid[id] = (Boolean) properties.get("isFluid");
+				isLightSource[id] = (Boolean) properties.get("isLightSource");
+				translucency[id] = blockTranslucencies.get((String) properties.get("translucencyGroup"));
+				textureIndex[id] = blockTextureNames.indexOf(texture);
+			}
 		} catch (Exception e) {
 			e.printStackTrace();
 		}
 
 		// Initialize the list of blocks that can be placed
-		for (Entry<String, Object[]> entry : blockProperties.entrySet()) {
-			placeBlockList.add(entry.getKey());
+		for (int id = 1; id < blockNames.length; id++) {
+			placeBlockList.add(blockNames[id]);
 		}
 		placeBlockList.remove(placeBlockList.indexOf("null"));
+
+		// Create the shared block instances
+		BlockFactory.init();
+	}
+
+	/** Returns the ID of a block given its name, or -1 if there is no such block */
+	public static int getId(String blockName) {
+		Integer id = blockIds.get(blockName);
+		return id == null ? -1 : id;
+	}
+
+	/** Returns the number of block IDs, including air */
+	public static int getNumIds() {
+		return blockNames.length;
 	}
 
-	/** Retrieves a single property given a block name */
+	/**
+	 * Retrieves a single property given a block name. This looks the block up by
+	 * name, so it should only be used when loading data or for the UI.
+	 */
 	public static Object getProperty(String blockName, String property) {
-		if (property == "texture") {
-			return blockProperties.get(blockName)[0];
-		} else if (property == "isFluid") {
-			return blockProperties.get(blockName)[1];
-		} else if (property == "translucency") {
-			return blockProperties.get(blockName)[2];
-		} else if (property == "isLightSource") {
-			return blockProperties.get(blockName)[3];
+		int id = getId(blockName);
+		if (property.equals("texture")) {
+			return blockTextureNames.get(textureIndex[id]);
+		} else if (property.equals("isFluid")) {
+			return isFluid[id];
+		} else if (property.equals("translucency")) {
+			return translucency[id];
+		} else if (property.equals("isLightSource")) {
+			return isLightSource[id];
 		}
 		return null;
 	}
@@ -121,11 +192,4 @@ public class Blocks {
 		return blockAnimTimer;
 	}
 
-	public static void sortByDistanceToPlayer(ArrayList<Block> blocks) {
-		for (int b = 0; b < blocks.size(); b++) {
-			blocks.get(b).setDistToEntity(WorldState.getMap().getEntityGroup(Entity.ENTITY_GROUP_PLAYERS).get(0));
-		}
-		Collections.sort(blocks);
-	}
-
 }
@@ -16,30 +16,53 @@ public class FluidBlock extends Block {
 	SOURCE_DIR_DOWN=3,
 	SOURCE_DIR_ORIGIN=4;
 	
-	private int sourceDir;
+	/** The number of source directions, used for sizing {@link BlockFactory}'s fluid tables */
+	static final int NUM_SOURCE_DIRS = 5;
+	
+	/**
+	 * The direction the fluid flowed in from. Each direction has its own shared
+	 * instance in {@link BlockFactory}.
+	 */
+	private final int sourceDir;
 
-	FluidBlock(int x, int y, String blockName, int sourceDir) {
-		super(x, y, blockName);
+	FluidBlock(String blockName, int sourceDir) {
+		super(blockName);
 		
 		this.sourceDir = sourceDir;
 	}
+
+	/** Returns the direction the fluid flowed in from */
+	public int getSourceDir() {
+		return sourceDir;
+	}
+
+	/** Returns whether the fluid started out where it is, rather than flowing there */
+	public boolean isSource() {
+		return sourceDir == SOURCE_DIR_ORIGIN;
+	}
 	
 	@Override
-	public void update(Map map) {
-		super.update(map);
+	public void update(Map map, int x, int y) {
+		super.update(map, x, y);
 		
 		if (Game.getTicks() % SPREAD_TIME == 0) {
 			
-			if (map.getBlock(this.getX(), this.getY()-1) == null) {
-				map.setBlock(new FluidBlock(this.getX(), this.getY()-1, this.getBlockType(), SOURCE_DIR_UP), this.getX(), this.getY()-1);
+			if (map.getBlock(x, y-1) == null) {
+				map.setBlock(BlockFactory.getFluidBlock(this.getId(), SOURCE_DIR_UP), x, y-1);
 			}
 			
 			
-			if (this.sourceDir == SOURCE_DIR_UP && (map.getBlock(this.getX(), this.getY()+1) == null || map.getBlock(this.getX(), this.getY()+1).getBlockType() != "water")) {
-				map.setBlock(null, this.getX(), this.getY());
+			// A falling fluid disappears once the same fluid is no longer above it
+			if (this.sourceDir == SOURCE_DIR_UP && (map.getBlock(x, y+1) == null || map.getBlock(x, y+1).getId() != this.getId())) {
+				map.setBlock(null, x, y);
 			}
 			
 		}
 	}
 
+	@Override
+	protected Object readResolve() {
+		return BlockFactory.getFluidBlock(Blocks.getId(getBlockType()), sourceDir);
+	}
+
 }
@@ -3,6 +3,8 @@ package net.thedanpage.game.world.map.filesystem;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InvalidClassException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 
@@ -58,13 +60,7 @@ public class SaveSystem {
 			}
 
 			try {
-				FileOutputStream f = new FileOutputStream(new File(fileToSave.getAbsolutePath()));
-				ObjectOutputStream o = new ObjectOutputStream(f);
-
-				o.writeObject(WorldState.getMap());
-
-				o.close();
-				f.close();
+				saveWorldToFile(WorldState.getMap(), fileToSave);
 			} catch (Exception e) {
 				e.printStackTrace();
 			}
@@ -75,6 +71,17 @@ public class SaveSystem {
 
 	}
 
+	/** Writes a map to a save file, without asking the player where */
+	public static void saveWorldToFile(Map map, File file) throws IOException {
+		FileOutputStream f = new FileOutputStream(new File(file.getAbsolutePath()));
+		ObjectOutputStream o = new ObjectOutputStream(f);
+
+		o.writeObject(map);
+
+		o.close();
+		f.close();
+	}
+
 	public static void loadWorldFromFilePrompt() throws Exception {
 
 		// parent component of the dialog
@@ -101,14 +108,20 @@ public class SaveSystem {
 
 		int result = fileChooser.showOpenDialog(parentFrame);
 		if (result == JFileChooser.APPROVE_OPTION) {
-			;
 			FileInputStream fi = new FileInputStream(fileChooser.getSelectedFile());
 			ObjectInputStream oi = new ObjectInputStream(fi);
 
-			WorldState.loadMap((Map) oi.readObject());
-
-			oi.close();
-			fi.close();
+			try {
+				WorldState.loadMap((Map) oi.readObject());
+			} catch (InvalidClassException e) {
+				// The save was made by a version of the game that stored worlds differently
+				JOptionPane.showMessageDialog(parentFrame,
+						"This world was saved by an older version of the game, and can't be loaded.",
+						"Incompatible save", JOptionPane.ERROR_MESSAGE);
+			} finally {
+				oi.close();
+				fi.close();
+			}
 		}
 
 	}
@@ -0,0 +1,451 @@
+package net.thedanpage.game.world.map.terrain;
+
+import java.util.Random;
+
+/**
+ * Seeded 2D and 3D simplex noise. This is the same algorithm as
+ * {@link SimplexNoise}, but each instance shuffles its own permutation table
+ * from a seed, rather than every world sharing one fixed table and putting the
+ * seed into an extra coordinate.
+ *
+ * <br>
+ * <br>
+ *
+ * The permutation and gradient tables are built in the constructor and kept
+ * in primitive arrays that are only changed by {@link #reseed(int)}, so one
+ * instance can be shared by any number of generator threads as long as it
+ * isn't reseeded while they use it.
+ *
+ * @author Dan
+ *
+ */
+public final class NoiseGenerator {
+
+	/** The 12 gradient directions used for 2D and 3D noise */
+	private static final double[][] GRAD3 = { { 1, 1, 0 }, { -1, 1, 0 }, { 1, -1, 0 }, { -1, -1, 0 }, { 1, 0, 1 },
+			{ -1, 0, 1 }, { 1, 0, -1 }, { -1, 0, -1 }, { 0, 1, 1 }, { 0, -1, 1 }, { 0, 1, -1 }, { 0, -1, -1 } };
+
+	// Skewing and unskewing factors for 2 and 3 dimensions
+	private static final double F2 = 0.5 * (Math.sqrt(3.0) - 1.0);
+	private static final double G2 = (3.0 - Math.sqrt(3.0)) / 6.0;
+	private static final double F3 = 1.0 / 3.0;
+	private static final double G3 = 1.0 / 6.0;
+
+	/** The seed the tables were built from */
+	private int seed;
+
+	/** The shuffled permutation table, doubled in length to avoid wrapping indices */
+	private final int[] perm = new int[512];
+
+	/**
+	 * The gradient of each permutation table entry, stored as x, y and z next to
+	 * each other so that looking one up doesn't need to follow a reference
+	 */
+	private final double[] grad = new double[512 * 3];
+
+	/**
+	 * @param seed the seed the permutation table is shuffled with
+	 */
+	public NoiseGenerator(int seed) {
+		reseed(seed);
+	}
+
+	/**
+	 * Rebuilds the tables from another seed, so the same instance gives the noise
+	 * of a new generator with that seed. Nothing else may be sampling the noise
+	 * while it is being reseeded.
+	 */
+	public void reseed(int seed) {
+		this.seed = seed;
+
+		// Shuffle the numbers 0 to 255
+		int[] p = new int[256];
+		for (int i = 0; i < 256; i++)
+			p[i] = i;
+		Random random = new Random(seed);
+		for (int i = 255; i > 0; i--) {
+			int j = random.nextInt(i + 1);
+			int temp = p[i];
+			p[i] = p[j];
+			p[j] = temp;
+		}
+
+		for (int i = 0; i < 512; i++) {
+			perm[i] = p[i & 255];
+			System.arraycopy(GRAD3[perm[i] % 12], 0, grad, i * 3, 3);
+		}
+	}
+
+	public int getSeed() {
+		return seed;
+	}
+
+	// This method is a *lot* faster than using (int)Math.floor(x)
+	private static int fastfloor(double x) {
+		int xi = (int) x;
+		return x < xi ? xi - 1 : xi;
+	}
+
+	/** 2D simplex noise, between -1 and 1 */
+	public double noise(double xin, double yin) {
+		// Skew the input space to determine which simplex cell we're in
+		double s = (xin + yin) * F2;
+		int i = fastfloor(xin + s);
+		int j = fastfloor(yin + s);
+		double t = (i + j) * G2;
+		// The x,y distances from the cell origin
+		double x0 = xin - (i - t);
+		double y0 = yin - (j - t);
+
+		// Offsets for the middle corner, depending on which triangle we're in
+		int i1, j1;
+		if (x0 > y0) {
+			i1 = 1;
+			j1 = 0;
+		} else {
+			i1 = 0;
+			j1 = 1;
+		}
+
+		double x1 = x0 - i1 + G2;
+		double y1 = y0 - j1 + G2;
+		double x2 = x0 - 1.0 + 2.0 * G2;
+		double y2 = y0 - 1.0 + 2.0 * G2;
+
+		// Work out the hashed gradient indices of the three simplex corners
+		int ii = i & 255;
+		int jj = j & 255;
+		int gi0 = (ii + perm[jj]) * 3;
+		int gi1 = (ii + i1 + perm[jj + j1]) * 3;
+		int gi2 = (ii + 1 + perm[jj + 1]) * 3;
+
+		// Add up the contribution from each corner
+		double n = 0;
+		double t0 = 0.5 - x0 * x0 - y0 * y0;
+		if (t0 >= 0) {
+			t0 *= t0;
+			n += t0 * t0 * (grad[gi0] * x0 + grad[gi0 + 1] * y0);
+		}
+		double t1 = 0.5 - x1 * x1 - y1 * y1;
+		if (t1 >= 0) {
+			t1 *= t1;
+			n += t1 * t1 * (grad[gi1] * x1 + grad[gi1 + 1] * y1);
+		}
+		double t2 = 0.5 - x2 * x2 - y2 * y2;
+		if (t2 >= 0) {
+			t2 *= t2;
+			n += t2 * t2 * (grad[gi2] * x2 + grad[gi2 + 1] * y2);
+		}
+
+		// Scale the result to the interval [-1,1]
+		return 70.0 * n;
+	}
+
+	/** 3D simplex noise, between -1 and 1 */
+	public double noise(double xin, double yin, double zin) {
+		// Skew the input space to determine which simplex cell we're in
+		double s = (xin + yin + zin) * F3;
+		int i = fastfloor(xin + s);
+		int j = fastfloor(yin + s);
+		int k = fastfloor(zin + s);
+		double t = (i + j + k) * G3;
+		// The x,y,z distances from the cell origin
+		double x0 = xin - (i - t);
+		double y0 = yin - (j - t);
+		double z0 = zin - (k - t);
+
+		// Offsets for the second and third corners, depending on which tetrahedron
+		// we're in
+		int i1, j1, k1;
+		int i2, j2, k2;
+		if (x0 >= y0) {
+			if (y0 >= z0) {
+				i1 = 1; j1 = 0; k1 = 0; i2 = 1; j2 = 1; k2 = 0;
+			} else if (x0 >= z0) {
+				i1 = 1; j1 = 0; k1 = 0; i2 = 1; j2 = 0; k2 = 1;
+			} else {
+				i1 = 0; j1 = 0; k1 = 1; i2 = 1; j2 = 0; k2 = 1;
+			}
+		} else {
+			if (y0 < z0) {
+				i1 = 0; j1 = 0; k1 = 1; i2 = 0; j2 = 1; k2 = 1;
+			} else if (x0 < z0) {
+				i1 = 0; j1 = 1; k1 = 0; i2 = 0; j2 = 1; k2 = 1;
+			} else {
+				i1 = 0; j1 = 1; k1 = 0; i2 = 1; j2 = 1; k2 = 0;
+			}
+		}
+
+		double x1 = x0 - i1 + G3;
+		double y1 = y0 - j1 + G3;
+		double z1 = z0 - k1 + G3;
+		double x2 = x0 - i2 + 2.0 * G3;
+		double y2 = y0 - j2 + 2.0 * G3;
+		double z2 = z0 - k2 + 2.0 * G3;
+		double x3 = x0 - 1.0 + 3.0 * G3;
+		double y3 = y0 - 1.0 + 3.0 * G3;
+		double z3 = z0 - 1.0 + 3.0 * G3;
+
+		// Work out the hashed gradient indices of the four simplex corners
+		int ii = i & 255;
+		int jj = j & 255;
+		int kk = k & 255;
+		int gi0 = (ii + perm[jj + perm[kk]]) * 3;
+		int gi1 = (ii + i1 + perm[jj + j1 + perm[kk + k1]]) * 3;
+		int gi2 = (ii + i2 + perm[jj + j2 + perm[kk + k2]]) * 3;
+		int gi3 = (ii + 1 + perm[jj + 1 + perm[kk + 1]]) * 3;
+
+		// Add up the contribution from each corner
+		double n = 0;
+		double t0 = 0.6 - x0 * x0 - y0 * y0 - z0 * z0;
+		if (t0 >= 0) {
+			t0 *= t0;
+			n += t0 * t0 * (grad[gi0] * x0 + grad[gi0 + 1] * y0 + grad[gi0 + 2] * z0);
+		}
+		double t1 = 0.6 - x1 * x1 - y1 * y1 - z1 * z1;
+		if (t1 >= 0) {
+			t1 *= t1;
+			n += t1 * t1 * (grad[gi1] * x1 + grad[gi1 + 1] * y1 + grad[gi1 + 2] * z1);
+		}
+		double t2 = 0.6 - x2 * x2 - y2 * y2 - z2 * z2;
+		if (t2 >= 0) {
+			t2 *= t2;
+			n += t2 * t2 * (grad[gi2] * x2 + grad[gi2 + 1] * y2 + grad[gi2 + 2] * z2);
+		}
+		double t3 = 0.6 - x3 * x3 - y3 * y3 - z3 * z3;
+		if (t3 >= 0) {
+			t3 *= t3;
+			n += t3 * t3 * (grad[gi3] * x3 + grad[gi3 + 1] * y3 + grad[gi3 + 2] * z3);
+		}
+
+		// Scale the result to stay just inside [-1,1]
+		return 32.0 * n;
+	}
+
+	/**
+	 * Fills part of an array with 2D noise along a horizontal line, so that
+	 * <code>out[offset + n] = noise(xStart + n * xStep, y)</code>, giving exactly
+	 * the same values.
+	 *
+	 * <br>
+	 * <br>
+	 *
+	 * The simplex cell only moves in <code>j</code> every few samples along a
+	 * line, so the permutation table is only looked up for <code>j</code> when it
+	 * does, rather than once for each corner of every sample.
+	 */
+	public void noiseRow(double[] out, int offset, int count, double xStart, double xStep, double y) {
+		int lastJ = Integer.MIN_VALUE;
+		int permJ0 = 0, permJ1 = 0;
+
+		for (int n = 0; n < count; n++) {
+			double xin = xStart + n * xStep;
+
+			// Skew the input space to determine which simplex cell we're in
+			double s = (xin + y) * F2;
+			int i = fastfloor(xin + s);
+			int j = fastfloor(y + s);
+			double t = (i + j) * G2;
+			double x0 = xin - (i - t);
+			double y0 = y - (j - t);
+
+			if (j != lastJ) {
+				lastJ = j;
+				permJ0 = perm[j & 255];
+				permJ1 = perm[(j & 255) + 1];
+			}
+
+			int i1, j1;
+			if (x0 > y0) {
+				i1 = 1;
+				j1 = 0;
+			} else {
+				i1 = 0;
+				j1 = 1;
+			}
+
+			double x1 = x0 - i1 + G2;
+			double y1 = y0 - j1 + G2;
+			double x2 = x0 - 1.0 + 2.0 * G2;
+			double y2 = y0 - 1.0 + 2.0 * G2;
+
+			int ii = i & 255;
+			int gi0 = (ii + permJ0) * 3;
+			int gi1 = (ii + i1 + (j1 == 0 ? permJ0 : permJ1)) * 3;
+			int gi2 = (ii + 1 + permJ1) * 3;
+
+			double sum = 0;
+			double t0 = 0.5 - x0 * x0 - y0 * y0;
+			if (t0 >= 0) {
+				t0 *= t0;
+				sum += t0 * t0 * (grad[gi0] * x0 + grad[gi0 + 1] * y0);
+			}
+			double t1 = 0.5 - x1 * x1 - y1 * y1;
+			if (t1 >= 0) {
+				t1 *= t1;
+				sum += t1 * t1 * (grad[gi1] * x1 + grad[gi1 + 1] * y1);
+			}
+			double t2 = 0.5 - x2 * x2 - y2 * y2;
+			if (t2 >= 0) {
+				t2 *= t2;
+				sum += t2 * t2 * (grad[gi2] * x2 + grad[gi2 + 1] * y2);
+			}
+
+			out[offset + n] = 70.0 * sum;
+		}
+	}
+
+	/**
+	 * Fills part of an array with 3D noise along a vertical line, one sample per
+	 * block, so that <code>out[offset + n] = noise(x, yStart + n, z)</code>, giving
+	 * exactly the same values.
+	 *
+	 * <br>
+	 * <br>
+	 *
+	 * Going up the line moves the simplex cell up by one or two in <code>j</code>
+	 * every sample, but only by one in <code>i</code> and <code>k</code> every few
+	 * samples. So the permutation table is only looked up for <code>k</code> when
+	 * the cell moves in <code>k</code>, leaving one lookup per corner instead of
+	 * two.
+	 */
+	public void noiseColumn(double[] out, int offset, int count, double x, double yStart, double z) {
+		int lastK = Integer.MIN_VALUE;
+		int permK0 = 0, permK1 = 0;
+
+		for (int n = 0; n < count; n++) {
+			double yin = yStart + n;
+
+			// Skew the input space to determine which simplex cell we're in
+			double s = (x + yin + z) * F3;
+			int i = fastfloor(x + s);
+			int j = fastfloor(yin + s);
+			int k = fastfloor(z + s);
+			double t = (i + j + k) * G3;
+			double x0 = x - (i - t);
+			double y0 = yin - (j - t);
+			double z0 = z - (k - t);
+
+			if (k != lastK) {
+				lastK = k;
+				permK0 = perm[k & 255];
+				permK1 = perm[(k & 255) + 1];
+			}
+
+			int i1, j1, k1;
+			int i2, j2, k2;
+			if (x0 >= y0) {
+				if (y0 >= z0) {
+					i1 = 1; j1 = 0; k1 = 0; i2 = 1; j2 = 1; k2 = 0;
+				} else if (x0 >= z0) {
+					i1 = 1; j1 = 0; k1 = 0; i2 = 1; j2 = 0; k2 = 1;
+				} else {
+					i1 = 0; j1 = 0; k1 = 1; i2 = 1; j2 = 0; k2 = 1;
+				}
+			} else {
+				if (y0 < z0) {
+					i1 = 0; j1 = 0; k1 = 1; i2 = 0; j2 = 1; k2 = 1;
+				} else if (x0 < z0) {
+					i1 = 0; j1 = 1; k1 = 0; i2 = 0; j2 = 1; k2 = 1;
+				} else {
+					i1 = 0; j1 = 1; k1 = 0; i2 = 1; j2 = 1; k2 = 0;
+				}
+			}
+
+			double x1 = x0 - i1 + G3;
+			double y1 = y0 - j1 + G3;
+			double z1 = z0 - k1 + G3;
+			double x2 = x0 - i2 + 2.0 * G3;
+			double y2 = y0 - j2 + 2.0 * G3;
+			double z2 = z0 - k2 + 2.0 * G3;
+			double x3 = x0 - 1.0 + 3.0 * G3;
+			double y3 = y0 - 1.0 + 3.0 * G3;
+			double z3 = z0 - 1.0 + 3.0 * G3;
+
+			int ii = i & 255;
+			int jj = j & 255;
+			int gi0 = (ii + perm[jj + permK0]) * 3;
+			int gi1 = (ii + i1 + perm[jj + j1 + (k1 == 0 ? permK0 : permK1)]) * 3;
+			int gi2 = (ii + i2 + perm[jj + j2 + (k2 == 0 ? permK0 : permK1)]) * 3;
+			int gi3 = (ii + 1 + perm[jj + 1 + permK1]) * 3;
+
+			double sum = 0;
+			double t0 = 0.6 - x0 * x0 - y0 * y0 - z0 * z0;
+			if (t0 >= 0) {
+				t0 *= t0;
+				sum += t0 * t0 * (grad[gi0] * x0 + grad[gi0 + 1] * y0 + grad[gi0 + 2] * z0);
+			}
+			double t1 = 0.6 - x1 * x1 - y1 * y1 - z1 * z1;
+			if (t1 >= 0) {
+				t1 *= t1;
+				sum += t1 * t1 * (grad[gi1] * x1 + grad[gi1 + 1] * y1 + grad[gi1 + 2] * z1);
+			}
+			double t2 = 0.6 - x2 * x2 - y2 * y2 - z2 * z2;
+			if (t2 >= 0) {
+				t2 *= t2;
+				sum += t2 * t2 * (grad[gi2] * x2 + grad[gi2 + 1] * y2 + grad[gi2 + 2] * z2);
+			}
+			double t3 = 0.6 - x3 * x3 - y3 * y3 - z3 * z3;
+			if (t3 >= 0) {
+				t3 *= t3;
+				sum += t3 * t3 * (grad[gi3] * x3 + grad[gi3 + 1] * y3 + grad[gi3 + 2] * z3);
+			}
+
+			out[offset + n] = 32.0 * sum;
+		}
+	}
+
+	/**
+	 * Fills an area with 3D noise that is only sampled on a coarse lattice, every
+	 * <code>step</code> blocks, and bilinearly interpolated in between. The lattice
+	 * lines up with multiples of <code>step</code> in world coordinates, so areas
+	 * next to each other join up seamlessly. Afterwards,
+	 * <code>out[x * stride + y]</code> is roughly <code>noise(xStart + x, y, z)</code>
+	 * for every <code>x</code> below <code>width</code> and <code>y</code> below
+	 * <code>height</code>.
+	 *
+	 * @param lattice space for the lattice samples, with room for at least
+	 *                {@link #getLatticeSize(int, int, int, int)} values
+	 * @return the number of noise samples taken
+	 */
+	public int noiseAreaInterpolated(double[] out, int stride, int xStart, int width, int height, double z, int step,
+			double[] lattice) {
+		int latticeXMin = Math.floorDiv(xStart, step);
+		int columns = -Math.floorDiv(-(xStart + width - 1), step) - latticeXMin + 1;
+		int rows = -Math.floorDiv(-(height - 1), step) + 1;
+
+		for (int i = 0; i < columns; i++)
+			for (int j = 0; j < rows; j++)
+				lattice[i * rows + j] = noise((latticeXMin + i) * step, j * step, z);
+
+		for (int x = 0; x < width; x++) {
+			int i = Math.floorDiv(xStart + x, step) - latticeXMin;
+			int i1 = Math.min(i + 1, columns - 1);
+			double fx = (double) (xStart + x - (latticeXMin + i) * step) / step;
+
+			for (int y = 0; y < height; y++) {
+				int j = y / step;
+				int j1 = Math.min(j + 1, rows - 1);
+				double fy = (double) (y - j * step) / step;
+
+				double bottom = lattice[i * rows + j] + (lattice[i1 * rows + j] - lattice[i * rows + j]) * fx;
+				double top = lattice[i * rows + j1] + (lattice[i1 * rows + j1] - lattice[i * rows + j1]) * fx;
+				out[x * stride + y] = bottom + (top - bottom) * fy;
+			}
+		}
+
+		return columns * rows;
+	}
+
+	/**
+	 * Returns the number of lattice samples
+	 * {@link #noiseAreaInterpolated(double[], int, int, int, int, double, int, double[])}
+	 * takes for an area
+	 */
+	public static int getLatticeSize(int xStart, int width, int height, int step) {
+		int columns = -Math.floorDiv(-(xStart + width - 1), step) - Math.floorDiv(xStart, step) + 1;
+		int rows = -Math.floorDiv(-(height - 1), step) + 1;
+		return columns * rows;
+	}
+
+}
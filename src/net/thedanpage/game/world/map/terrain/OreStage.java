@@ -0,0 +1,172 @@
+package net.thedanpage.game.world.map.terrain;
+
+import net.thedanpage.game.world.map.Chunk;
+import net.thedanpage.game.world.map.Map;
+import net.thedanpage.game.world.map.block.Block;
+import net.thedanpage.game.world.map.block.BlockFactory;
+
+/**
+ * Replaces some of the stone in each column with coal, iron and diamond ore.
+ * Each ore has two noise fields, and a block becomes ore where both of them
+ * are high enough. Diamonds only appear in the bottom few rows.
+ *
+ * @author Dan
+ *
+ */
+public class OreStage implements TerrainStage {
+
+	/** The highest row diamonds can be placed in */
+	public static final int MAX_DIAMOND_HEIGHT = 5;
+
+	/** How far each ore's noise field is shifted along the X axis, so the ores don't line up */
+	private static final int[] ORE_NOISE_OFFSETS = { 0, 100, 200 };
+
+	private final NoiseGenerator noise;
+
+	/** How far apart, in blocks, each ore's noise is sampled */
+	private final int[] oreLatticeSteps;
+
+	/**
+	 * Each generating thread's buffers for the coal, iron and diamond noise fields
+	 * of a chunk, and the lattice they are interpolated from, so that they aren't
+	 * allocated for every chunk
+	 */
+	private static final ThreadLocal<double[][]> oreFieldBuffers = ThreadLocal
+			.withInitial(() -> new double[][] { new double[Chunk.CHUNK_WIDTH * Map.MAP_HEIGHT],
+					new double[Chunk.CHUNK_WIDTH * Map.MAP_HEIGHT], new double[Chunk.CHUNK_WIDTH * Map.MAP_HEIGHT],
+					new double[(Chunk.CHUNK_WIDTH + 2) * (Map.MAP_HEIGHT + 2)] });
+
+	/**
+	 * @param oreLatticeSteps how far apart, in blocks, the noise of each ore is
+	 *                        sampled. A step of 1 samples every block.
+	 */
+	public OreStage(NoiseGenerator noise, int[] oreLatticeSteps) {
+		this.noise = noise;
+		this.oreLatticeSteps = new int[TerrainGen.NUM_ORES];
+		for (int i = 0; i < TerrainGen.NUM_ORES; i++)
+			this.oreLatticeSteps[i] = Math.max(1, oreLatticeSteps[i]);
+	}
+
+	/**
+	 * Returns how far apart, in blocks, an ore's noise is sampled, for
+	 * {@link TerrainGen#ORE_COAL}, {@link TerrainGen#ORE_IRON} or
+	 * {@link TerrainGen#ORE_DIAMOND}
+	 */
+	public int getLatticeStep(int ore) {
+		return oreLatticeSteps[ore];
+	}
+
+	@Override
+	public String getName() {
+		return "ores";
+	}
+
+	@Override
+	public void generate(TerrainBuffer buffer) {
+		int evaluations = generateOres(buffer.getX(), buffer.getStoneTops(), Map.MAP_HEIGHT - 1, buffer.getBlocks());
+		buffer.addNoiseEvaluations(evaluations);
+	}
+
+	/**
+	 * Places the ore in a chunk's stone, but only in the rows up to a height.
+	 * Whether a block becomes ore only depends on the noise at that block, so
+	 * those rows come out the same as when the whole chunk is generated, for much
+	 * less work when only the bottom of the world matters. Blocks that don't
+	 * become ore are left as they are.
+	 *
+	 * @param x0        the X coordinate of the chunk's left edge
+	 * @param stoneTops the height of the highest stone in each column, or -1 if
+	 *                  there isn't any. Everything below it is stone.
+	 * @param maxY      the highest row to place ore in
+	 * @param blocks    the chunk's blocks, indexed by <code>[x][y]</code>, which
+	 *                  only needs rows up to <code>maxY</code>
+	 * @return the number of noise samples taken
+	 */
+	public int generateOres(int x0, int[] stoneTops, int maxY, Block[][] blocks) {
+		Block coalOre = BlockFactory.getBlock("coal_ore");
+		Block ironOre = BlockFactory.getBlock("iron_ore");
+		Block diamondOre = BlockFactory.getBlock("diamond_ore");
+
+		int maxStoneTop = -1;
+		for (int x = 0; x < Chunk.CHUNK_WIDTH; x++)
+			maxStoneTop = Math.max(maxStoneTop, Math.min(stoneTops[x], maxY));
+
+		// Sample the first noise field of each ore for all of the stone at once. The
+		// second field only matters where the first one passes, so it is sampled per block.
+		double[][] oreFields = oreFieldBuffers.get();
+		double[] coalField = oreFields[TerrainGen.ORE_COAL];
+		double[] ironField = oreFields[TerrainGen.ORE_IRON];
+		double[] diamondField = oreFields[TerrainGen.ORE_DIAMOND];
+		int evaluations = 0;
+		evaluations += fillOreField(TerrainGen.ORE_COAL, x0, stoneTops, maxStoneTop, oreFields);
+		evaluations += fillOreField(TerrainGen.ORE_IRON, x0, stoneTops, maxStoneTop, oreFields);
+		evaluations += fillOreField(TerrainGen.ORE_DIAMOND, x0, stoneTops, Math.min(maxStoneTop, MAX_DIAMOND_HEIGHT),
+				oreFields);
+
+		for (int x = 0; x < Chunk.CHUNK_WIDTH; x++) {
+			for (int y = Math.min(stoneTops[x], maxY); y >= 0; y--) {
+				int cell = x * Map.MAP_HEIGHT + y;
+				Block ore = null;
+
+				if ((coalField[cell] + 3) * 100 > 368) {
+					evaluations++;
+					if ((secondOreNoise(TerrainGen.ORE_COAL, x0 + x, y) + 3) * 100 > 368)
+						ore = coalOre;
+				}
+
+				if (ore == null && (ironField[cell] + 3) * 100 > 376.35) {
+					evaluations++;
+					if ((secondOreNoise(TerrainGen.ORE_IRON, x0 + x, y) + 3) * 100 > 376.35)
+						ore = ironOre;
+				}
+
+				if (ore == null && y <= MAX_DIAMOND_HEIGHT && (diamondField[cell] + 3) * 100 > 381.5) {
+					evaluations++;
+					if ((secondOreNoise(TerrainGen.ORE_DIAMOND, x0 + x, y) + 3) * 100 > 381.5)
+						ore = diamondOre;
+				}
+
+				if (ore != null)
+					blocks[x][y] = ore;
+			}
+		}
+
+		return evaluations;
+	}
+
+	/**
+	 * Fills the first noise field of an ore, from the bottom of the map up to a
+	 * height. Ores with a lattice step of 1 are sampled at every block, and the
+	 * rest are interpolated from a coarse lattice.
+	 *
+	 * @return the number of noise samples taken
+	 */
+	private int fillOreField(int ore, int x0, int[] stoneTops, int maxHeight, double[][] oreFields) {
+		if (maxHeight < 0)
+			return 0;
+
+		double[] field = oreFields[ore];
+		int xStart = x0 + ORE_NOISE_OFFSETS[ore];
+		int step = oreLatticeSteps[ore];
+
+		if (step == 1) {
+			// Only sample the stone in each column
+			int evaluations = 0;
+			for (int x = 0; x < Chunk.CHUNK_WIDTH; x++) {
+				int height = Math.min(stoneTops[x], maxHeight) + 1;
+				noise.noiseColumn(field, x * Map.MAP_HEIGHT, height, xStart + x, 0, 0);
+				evaluations += height;
+			}
+			return evaluations;
+		}
+
+		return noise.noiseAreaInterpolated(field, Map.MAP_HEIGHT, xStart, Chunk.CHUNK_WIDTH, maxHeight + 1, 0, step,
+				oreFields[TerrainGen.NUM_ORES]);
+	}
+
+	/** Samples the second noise field of an ore at one block, which is never interpolated */
+	private double secondOreNoise(int ore, int x, int y) {
+		return noise.noise(x + ORE_NOISE_OFFSETS[ore], y + 10000, 0);
+	}
+
+}
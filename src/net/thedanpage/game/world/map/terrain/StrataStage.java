@@ -0,0 +1,75 @@
+package net.thedanpage.game.world.map.terrain;
+
+import net.thedanpage.game.world.map.Chunk;
+import net.thedanpage.game.world.map.block.Block;
+import net.thedanpage.game.world.map.block.BlockFactory;
+
+/**
+ * Fills each column below the surface with a layer of grass, then dirt, then
+ * stone all the way down. The dirt gets thinner the higher the ground is.
+ *
+ * @author Dan
+ *
+ */
+public class StrataStage implements TerrainStage {
+
+	@Override
+	public String getName() {
+		return "strata";
+	}
+
+	@Override
+	public void generate(TerrainBuffer buffer) {
+		// Look up the shared blocks once, rather than for every cell
+		Block grass = BlockFactory.getBlock("grass");
+		Block dirt = BlockFactory.getBlock("dirt");
+		Block stone = BlockFactory.getBlock("stone");
+
+		Block[][] blocks = buffer.getBlocks();
+		int[] surfaceHeights = buffer.getSurfaceHeights();
+		int[] stoneTops = buffer.getStoneTops();
+
+		for (int x = 0; x < Chunk.CHUNK_WIDTH; x++) {
+			int surfaceHeight = surfaceHeights[x];
+
+			for (int depth = 0; depth <= surfaceHeight; depth++) {
+				int y = surfaceHeight - depth;
+
+				// Grass
+				if (depth == 0)
+					blocks[x][y] = grass;
+
+				// Stone, which the ores are placed in later
+				else if (isStone(surfaceHeight, depth)) {
+					if (stoneTops[x] < 0)
+						stoneTops[x] = y;
+					blocks[x][y] = stone;
+				}
+
+				// Dirt
+				else
+					blocks[x][y] = dirt;
+			}
+		}
+	}
+
+	/**
+	 * Returns the height of the highest stone in a column, or -1 if there isn't
+	 * any, without filling in its blocks
+	 *
+	 * @param surfaceHeight the height of the grass in the column
+	 */
+	public static int getStoneTop(int surfaceHeight) {
+		for (int depth = 1; depth <= surfaceHeight; depth++) {
+			if (isStone(surfaceHeight, depth))
+				return surfaceHeight - depth;
+		}
+		return -1;
+	}
+
+	/** Returns whether the block a number of blocks below the grass is stone */
+	private static boolean isStone(int surfaceHeight, int depth) {
+		return depth >= (surfaceHeight - depth) / 20 + 8;
+	}
+
+}
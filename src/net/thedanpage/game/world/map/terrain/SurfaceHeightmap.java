@@ -0,0 +1,169 @@
+package net.thedanpage.game.world.map.terrain;
+
+import net.thedanpage.game.framework.LongHashMap;
+import net.thedanpage.game.world.map.Chunk;
+
+/**
+ * The height of the ground in every column of one world, worked out from the
+ * surface noise without generating any chunks. Heights are calculated a region
+ * of several chunks at a time and kept, so after the first question about a
+ * region, the height of any column in it is just an array lookup.
+ *
+ * <br>
+ * <br>
+ *
+ * Only {@link #DEFAULT_MAX_REGIONS} regions are kept at once. When another one
+ * is needed, the one that was used longest ago is forgotten, and worked out
+ * again if it is needed later. It can be used by several threads at once.
+ *
+ * @author Dan
+ *
+ */
+public class SurfaceHeightmap {
+
+	/** The number of chunks in each region */
+	public static final int REGION_CHUNKS = 16;
+
+	/** The number of columns in each region */
+	public static final int REGION_WIDTH = REGION_CHUNKS * Chunk.CHUNK_WIDTH;
+
+	/**
+	 * The number of regions kept by default. Each one takes
+	 * <code>2 * REGION_WIDTH</code> bytes of heights, so this is about 16KB.
+	 */
+	public static final int DEFAULT_MAX_REGIONS = 64;
+
+	/** The heights of one region's columns, and when they were last used */
+	private static class Region {
+
+		final short[] heights;
+
+		/** The value of {@link SurfaceHeightmap#clock} when the region was last used */
+		long lastUsed;
+
+		Region(short[] heights) {
+			this.heights = heights;
+		}
+
+	}
+
+	private final NoiseGenerator noise;
+
+	private final int maxRegions;
+
+	/** The regions that have been worked out, by region index */
+	private final LongHashMap<Region> regions;
+
+	/** Counts up every time a region is used, for finding the one used longest ago */
+	private long clock = 0;
+
+	/** The number of noise samples taken so far, for measuring */
+	private long noiseEvaluations = 0;
+
+	/** Each thread's buffer for a region of surface noise */
+	private static final ThreadLocal<double[]> noiseBuffers = ThreadLocal
+			.withInitial(() -> new double[REGION_WIDTH]);
+
+	public SurfaceHeightmap(NoiseGenerator noise) {
+		this(noise, DEFAULT_MAX_REGIONS);
+	}
+
+	/**
+	 * @param maxRegions the number of regions to keep at once
+	 */
+	public SurfaceHeightmap(NoiseGenerator noise, int maxRegions) {
+		this.noise = noise;
+		this.maxRegions = Math.max(1, maxRegions);
+		this.regions = new LongHashMap<Region>(this.maxRegions + 1);
+	}
+
+	public NoiseGenerator getNoise() {
+		return noise;
+	}
+
+	/** Returns the height of the grass in a column */
+	public int getHeight(int x) {
+		return getRegion(Math.floorDiv(x, REGION_WIDTH))[Math.floorMod(x, REGION_WIDTH)];
+	}
+
+	/**
+	 * Copies the heights of a run of columns into an array, so that
+	 * <code>out[offset + i] = getHeight(xStart + i)</code>
+	 */
+	public void getHeights(int[] out, int offset, int xStart, int count) {
+		int i = 0;
+		while (i < count) {
+			int x = xStart + i;
+			short[] heights = getRegion(Math.floorDiv(x, REGION_WIDTH));
+			int start = Math.floorMod(x, REGION_WIDTH);
+			int end = Math.min(REGION_WIDTH, start + count - i);
+			for (int column = start; column < end; column++)
+				out[offset + i++] = heights[column];
+		}
+	}
+
+	/**
+	 * Forgets every region, for example after the noise has been reseeded, so the
+	 * heights are worked out again the next time they are asked for
+	 */
+	public synchronized void clear() {
+		regions.clear();
+	}
+
+	/** Returns the number of regions being kept */
+	public synchronized int getRegionCount() {
+		return regions.size();
+	}
+
+	/** Returns the number of noise samples taken so far */
+	public synchronized long getNoiseEvaluations() {
+		return noiseEvaluations;
+	}
+
+	/** Returns the heights of a region's columns, working them out if they aren't kept */
+	private short[] getRegion(long index) {
+		synchronized (this) {
+			Region region = regions.get(index);
+			if (region != null) {
+				region.lastUsed = ++clock;
+				return region.heights;
+			}
+		}
+
+		// Work the heights out without holding the lock, so other threads can carry on
+		short[] heights = new short[REGION_WIDTH];
+		double[] surfaceNoise = noiseBuffers.get();
+		noise.noiseRow(surfaceNoise, 0, REGION_WIDTH, index * REGION_WIDTH / 32.0, 1 / 32.0, 0);
+		for (int x = 0; x < REGION_WIDTH; x++)
+			heights[x] = (short) SurfaceStage.getSurfaceHeight(surfaceNoise[x]);
+
+		synchronized (this) {
+			noiseEvaluations += REGION_WIDTH;
+
+			// Another thread may have worked out the same region in the meantime
+			Region region = regions.get(index);
+			if (region == null) {
+				if (regions.size() >= maxRegions)
+					evictLeastRecentlyUsed();
+				region = new Region(heights);
+				regions.put(index, region);
+			}
+			region.lastUsed = ++clock;
+			return region.heights;
+		}
+	}
+
+	private void evictLeastRecentlyUsed() {
+		long oldest = 0;
+		long oldestUsed = Long.MAX_VALUE;
+		for (int slot = 0; slot < regions.capacity(); slot++) {
+			Region region = regions.valueAt(slot);
+			if (region != null && region.lastUsed < oldestUsed) {
+				oldest = regions.keyAt(slot);
+				oldestUsed = region.lastUsed;
+			}
+		}
+		regions.remove(oldest);
+	}
+
+}
@@ -0,0 +1,42 @@
+package net.thedanpage.game.world.map.terrain;
+
+import net.thedanpage.game.world.map.Chunk;
+
+/**
+ * Works out the height of the ground in each column of a chunk using simplex
+ * noise. This is the basis of the terrain generation. It doesn't place any
+ * blocks itself.
+ *
+ * <br>
+ * <br>
+ *
+ * The heights come from the world's {@link SurfaceHeightmap}, so columns that
+ * something else has already asked about aren't worked out again.
+ *
+ * @author Dan
+ *
+ */
+public class SurfaceStage implements TerrainStage {
+
+	private final SurfaceHeightmap heightmap;
+
+	public SurfaceStage(SurfaceHeightmap heightmap) {
+		this.heightmap = heightmap;
+	}
+
+	@Override
+	public String getName() {
+		return "surface";
+	}
+
+	@Override
+	public void generate(TerrainBuffer buffer) {
+		heightmap.getHeights(buffer.getSurfaceHeights(), 0, buffer.getX(), Chunk.CHUNK_WIDTH);
+	}
+
+	/** Turns a sample of the surface noise into the height of the ground */
+	static int getSurfaceHeight(double noise) {
+		return (int) ((noise + 3) * 10);
+	}
+
+}
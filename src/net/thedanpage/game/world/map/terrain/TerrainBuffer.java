@@ -0,0 +1,77 @@
+package net.thedanpage.game.world.map.terrain;
+
+import java.util.Arrays;
+
+import net.thedanpage.game.world.map.Chunk;
+import net.thedanpage.game.world.map.Map;
+import net.thedanpage.game.world.map.block.Block;
+
+/**
+ * The chunk a {@link TerrainGen} is working on, passed from one
+ * {@link TerrainStage} to the next. Along with the blocks, it holds what the
+ * earlier stages found out about each column, so that later stages don't have
+ * to work it out again.
+ *
+ * @author Dan
+ *
+ */
+public class TerrainBuffer {
+
+	/** The X coordinate of the chunk's left edge */
+	private final int x0;
+
+	/** The chunk's blocks, indexed by <code>[x][y]</code> relative to the chunk */
+	private final Block[][] blocks = new Block[Chunk.CHUNK_WIDTH][Map.MAP_HEIGHT];
+
+	/** The height of the grass in each column, or -1 if there is no ground */
+	private final int[] surfaceHeights = new int[Chunk.CHUNK_WIDTH];
+
+	/** The height of the highest stone in each column, or -1 if there isn't any */
+	private final int[] stoneTops = new int[Chunk.CHUNK_WIDTH];
+
+	/** The number of noise samples the stages have taken */
+	private int noiseEvaluations = 0;
+
+	/**
+	 * @param x0 the X coordinate of the chunk's left edge
+	 */
+	public TerrainBuffer(int x0) {
+		this.x0 = x0;
+		Arrays.fill(surfaceHeights, -1);
+		Arrays.fill(stoneTops, -1);
+	}
+
+	public int getX() {
+		return x0;
+	}
+
+	public Block[][] getBlocks() {
+		return blocks;
+	}
+
+	public int[] getSurfaceHeights() {
+		return surfaceHeights;
+	}
+
+	public int[] getStoneTops() {
+		return stoneTops;
+	}
+
+	/** Returns the height of the highest stone in the chunk, or -1 if there isn't any */
+	public int getMaxStoneTop() {
+		int max = -1;
+		for (int top : stoneTops)
+			max = Math.max(max, top);
+		return max;
+	}
+
+	/** Records noise samples taken by a stage */
+	public void addNoiseEvaluations(int evaluations) {
+		noiseEvaluations += evaluations;
+	}
+
+	public int getNoiseEvaluations() {
+		return noiseEvaluations;
+	}
+
+}
@@ -1,56 +1,230 @@
 package net.thedanpage.game.world.map.terrain;
 
-import net.thedanpage.game.world.map.Chunk;
-import net.thedanpage.game.world.map.Map;
+import java.util.concurrent.atomic.LongAdder;
+
 import net.thedanpage.game.world.map.block.Block;
-import net.thedanpage.game.world.map.block.BlockFactory;
 
+/**
+ * Generates the blocks of chunks for one world. Each world has its own
+ * instance, built from the world's seed, and it can be shared by every thread
+ * generating that world's chunks.
+ * 
+ * <br>
+ * <br>
+ * 
+ * The terrain is made by a pipeline of {@link TerrainStage}s, which by default
+ * are {@link SurfaceStage}, {@link StrataStage}, {@link OreStage} and
+ * {@link WaterStage}, run in that order. Each stage can be turned off, and the
+ * time each one takes is recorded for every chunk.
+ * 
+ * @author Dan
+ */
 public class TerrainGen {
 	
-	public static Block[][] generateChunk(int x0, int seed) {
-		
-		Block[][] blocks = new Block[Chunk.CHUNK_WIDTH][Map.MAP_HEIGHT];
+	/** Indices of each ore, for {@link #getOreLatticeStep(int)} */
+	public static final int ORE_COAL = 0, ORE_IRON = 1, ORE_DIAMOND = 2;
+	
+	public static final int NUM_ORES = 3;
+	
+	/** Sampling every ore's noise at every block, with no interpolation */
+	public static final int[] FULL_RESOLUTION_ORE_LATTICE_STEPS = { 1, 1, 1 };
+	
+	/**
+	 * How far apart, in blocks, each ore's noise is sampled by default. The ore
+	 * noise changes about once per block, so interpolating it from a coarser
+	 * lattice smooths away most of the peaks that make ore, and loses most of the
+	 * ore (see {@link net.thedanpage.game.tools.OreInterpolationDiff}). Worlds
+	 * are generated at full resolution unless a lattice is asked for.
+	 */
+	public static final int[] DEFAULT_ORE_LATTICE_STEPS = FULL_RESOLUTION_ORE_LATTICE_STEPS;
+	
+	/** The noise all of the world's terrain is based on */
+	private final NoiseGenerator noise;
+	
+	/** The height of the ground in every column, which the surface stage reads from */
+	private final SurfaceHeightmap heightmap;
+	
+	/** The stages that make the terrain, in the order they run */
+	private final TerrainStage[] stages;
+	
+	/**
+	 * Whether each stage runs. It is replaced rather than changed, so a chunk
+	 * being generated on another thread sees either the old or the new settings.
+	 */
+	private volatile boolean[] stagesEnabled;
+	
+	/** The total time each stage has spent generating chunks, in nanoseconds */
+	private final LongAdder[] stageNanos;
+	
+	/** The number of chunks each stage has generated */
+	private final LongAdder[] stageChunks;
+	
+	/** The number of noise samples taken so far, for measuring */
+	private final LongAdder noiseEvaluations = new LongAdder();
+	
+	/**
+	 * @param seed the world's seed
+	 */
+	public TerrainGen(int seed) {
+		this(seed, DEFAULT_ORE_LATTICE_STEPS);
+	}
+	
+	/**
+	 * @param seed            the world's seed
+	 * @param oreLatticeSteps how far apart, in blocks, the noise of each ore is
+	 *                        sampled, indexed by {@link #ORE_COAL},
+	 *                        {@link #ORE_IRON} and {@link #ORE_DIAMOND}. A step
+	 *                        of 1 samples every block.
+	 */
+	public TerrainGen(int seed, int[] oreLatticeSteps) {
+		this(new SurfaceHeightmap(new NoiseGenerator(seed)), oreLatticeSteps);
+	}
+	
+	private TerrainGen(SurfaceHeightmap heightmap, int[] oreLatticeSteps) {
+		this(heightmap, new SurfaceStage(heightmap), new StrataStage(),
+				new OreStage(heightmap.getNoise(), oreLatticeSteps), new WaterStage());
+	}
+	
+	/**
+	 * Makes a generator with its own stages, so that one can be swapped for
+	 * another without changing the rest
+	 * 
+	 * @param heightmap the world's surface heights, which the stages should also
+	 *                  use, along with its noise
+	 * @param stages    the stages to run on each chunk, in order
+	 */
+	public TerrainGen(SurfaceHeightmap heightmap, TerrainStage... stages) {
+		this.noise = heightmap.getNoise();
+		this.heightmap = heightmap;
+		this.stages = stages.clone();
+		this.stagesEnabled = new boolean[stages.length];
+		this.stageNanos = new LongAdder[stages.length];
+		this.stageChunks = new LongAdder[stages.length];
+		for (int i = 0; i < stages.length; i++) {
+			stagesEnabled[i] = true;
+			stageNanos[i] = new LongAdder();
+			stageChunks[i] = new LongAdder();
+		}
+	}
+	
+	public int getSeed() {
+		return noise.getSeed();
+	}
+	
+	/**
+	 * Makes this generator generate the world from another seed, without building
+	 * a new one. This is much cheaper than a new generator when trying lots of
+	 * seeds, but no chunks may be generating while it happens.
+	 */
+	public synchronized void reseed(int seed) {
+		noise.reseed(seed);
+		heightmap.clear();
+	}
+	
+	public NoiseGenerator getNoise() {
+		return noise;
+	}
+	
+	/**
+	 * Returns the height of the ground in every column of the world, which can be
+	 * asked about without generating any chunks
+	 */
+	public SurfaceHeightmap getHeightmap() {
+		return heightmap;
+	}
+	
+	/**
+	 * Returns how far apart, in blocks, an ore's noise is sampled by this
+	 * generator's {@link OreStage}, or 1 if it doesn't have one
+	 */
+	public int getOreLatticeStep(int ore) {
+		OreStage ores = getOreStage();
+		return ores == null ? 1 : ores.getLatticeStep(ore);
+	}
+	
+	/** Returns this generator's {@link OreStage}, or null if it doesn't have one */
+	public OreStage getOreStage() {
+		for (TerrainStage stage : stages) {
+			if (stage instanceof OreStage)
+				return (OreStage) stage;
+		}
+		return null;
+	}
+	
+	/** Returns the number of noise samples taken by every chunk generated so far */
+	public long getNoiseEvaluations() {
+		return noiseEvaluations.sum() + heightmap.getNoiseEvaluations();
+	}
+	
+	public int getStageCount() {
+		return stages.length;
+	}
+	
+	public TerrainStage getStage(int index) {
+		return stages[index];
+	}
+	
+	/** Returns the index of the stage with a name, or -1 if there isn't one */
+	public int getStageIndex(String name) {
+		for (int i = 0; i < stages.length; i++) {
+			if (stages[i].getName().equals(name))
+				return i;
+		}
+		return -1;
+	}
+	
+	public boolean isStageEnabled(int index) {
+		return stagesEnabled[index];
+	}
+	
+	/** Turns a stage on or off for every chunk generated after this */
+	public synchronized void setStageEnabled(int index, boolean enabled) {
+		boolean[] newStagesEnabled = stagesEnabled.clone();
+		newStagesEnabled[index] = enabled;
+		stagesEnabled = newStagesEnabled;
+	}
+	
+	/** Returns the total time a stage has spent generating chunks, in nanoseconds */
+	public long getStageNanos(int index) {
+		return stageNanos[index].sum();
+	}
+	
+	/** Returns the number of chunks a stage has generated */
+	public long getStageChunks(int index) {
+		return stageChunks[index].sum();
+	}
+	
+	/** Returns the average time a stage has taken per chunk, in nanoseconds */
+	public double getStageNanosPerChunk(int index) {
+		long chunks = getStageChunks(index);
+		return chunks == 0 ? 0 : (double) getStageNanos(index) / chunks;
+	}
+	
+	/** Forgets the time taken by every stage so far, for example after a warmup */
+	public void resetStageTimings() {
+		for (int i = 0; i < stages.length; i++) {
+			stageNanos[i].reset();
+			stageChunks[i].reset();
+		}
+	}
+	
+	public Block[][] generateChunk(int x0) {
 		
-		// Terrain gen
+		TerrainBuffer buffer = new TerrainBuffer(x0);
+		boolean[] enabled = stagesEnabled;
 		
-		for (int x=0; x<Chunk.CHUNK_WIDTH; x++) {
-			// Calculate surface height using simplex noise. This is the basis of the terrain generation.
-			int surfaceHeight = (int) ((SimplexNoise.noise((x0+x)/32.0, seed)+3)*10);
-			
-			int counter = 0;
-			for (int y=surfaceHeight; y>=0; y--) {
-				
-				// Grass
-				if (counter == 0) blocks[x][y] = BlockFactory.createBlock(x0+x,y,"grass");
-				
-				// Dirt
-				else if (counter < (surfaceHeight-counter)/20 + 8) blocks[x][y] = BlockFactory.createBlock(x0+x,y,"dirt");
-				
-				// Stone and minerals
-				else {
-					if ((SimplexNoise.noise(x0+x, y, seed)+3)*100 > 368 && (SimplexNoise.noise(x0+x, y+10000, seed)+3)*100 > 368)
-						blocks[x][y] = BlockFactory.createBlock(x0+x,y,"coal_ore");
-					
-					else if ((SimplexNoise.noise(x0+x+100, y, seed)+3)*100 > 376.35 && (SimplexNoise.noise(x0+x+100, y+10000, seed)+3)*100 > 376.35)
-						blocks[x][y] = BlockFactory.createBlock(x0+x,y,"iron_ore");
-					
-					else if (y <= 5 && (SimplexNoise.noise(x0+x+200, y, seed)+3)*100 > 381.5 && (SimplexNoise.noise(x0+x+200, y+10000, seed)+3)*100 > 381.5)
-						blocks[x][y] = BlockFactory.createBlock(x0+x,y,"diamond_ore");
-					
-					else blocks[x][y] = BlockFactory.createBlock(x0+x,y,"stone");
-				}
-				
-				counter ++;
-			}
+		for (int i = 0; i < stages.length; i++) {
+			if (!enabled[i])
+				continue;
 			
-			for (int y=24; y>=0; y--) {
-				if (blocks[x][y] == null) blocks[x][y] = BlockFactory.createBlock(x0+x,y,"water");
-			}
+			long start = System.nanoTime();
+			stages[i].generate(buffer);
+			stageNanos[i].add(System.nanoTime() - start);
+			stageChunks[i].increment();
 		}
+		noiseEvaluations.add(buffer.getNoiseEvaluations());
 		
-		// End terrain gen
-		
-		return blocks;
+		return buffer.getBlocks();
 		
 	}
 
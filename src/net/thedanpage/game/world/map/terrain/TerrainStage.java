@@ -0,0 +1,25 @@
+package net.thedanpage.game.world.map.terrain;
+
+/**
+ * One step of generating a chunk's terrain, such as laying down the surface or
+ * placing ores. {@link TerrainGen} runs its stages in order on the same
+ * {@link TerrainBuffer}, so each stage builds on what the ones before it left.
+ *
+ * <br>
+ * <br>
+ *
+ * A stage can be used by several generating threads at once, so it must not
+ * keep any state about the chunk it is working on outside of the buffer.
+ *
+ * @author Dan
+ *
+ */
+public interface TerrainStage {
+
+	/** Returns the name of the stage, for benchmarks */
+	public String getName();
+
+	/** Adds this stage's part of the terrain to a chunk */
+	public void generate(TerrainBuffer buffer);
+
+}
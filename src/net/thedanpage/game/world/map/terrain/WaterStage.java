@@ -0,0 +1,36 @@
+package net.thedanpage.game.world.map.terrain;
+
+import net.thedanpage.game.world.map.Chunk;
+import net.thedanpage.game.world.map.block.Block;
+import net.thedanpage.game.world.map.block.BlockFactory;
+
+/**
+ * Fills every empty cell up to sea level with water
+ *
+ * @author Dan
+ *
+ */
+public class WaterStage implements TerrainStage {
+
+	/** The height of the top of the sea */
+	public static final int SEA_LEVEL = 24;
+
+	@Override
+	public String getName() {
+		return "water";
+	}
+
+	@Override
+	public void generate(TerrainBuffer buffer) {
+		Block water = BlockFactory.getBlock("water");
+		Block[][] blocks = buffer.getBlocks();
+
+		for (int x = 0; x < Chunk.CHUNK_WIDTH; x++) {
+			for (int y = SEA_LEVEL; y >= 0; y--) {
+				if (blocks[x][y] == null)
+					blocks[x][y] = water;
+			}
+		}
+	}
+
+}
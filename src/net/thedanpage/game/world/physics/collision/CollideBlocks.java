@@ -1,68 +1,100 @@
 package net.thedanpage.game.world.physics.collision;
 
 import java.util.ArrayList;
+import java.util.Collections;
 
 import net.thedanpage.game.world.entity.Entity;
 import net.thedanpage.game.world.map.Map;
 import net.thedanpage.game.world.map.block.Block;
-import net.thedanpage.game.world.map.block.Blocks;
 
 public class CollideBlocks {
 
-	private static ArrayList<Block> relevantBlocks;
+	private static ArrayList<NearbyBlock> relevantBlocks;
+
+	/**
+	 * A block near the entity, along with its coordinates. Blocks are shared
+	 * between cells, so they can't keep their own position or distance.
+	 */
+	private static class NearbyBlock implements Comparable<NearbyBlock> {
+		private final Block block;
+		private final int x, y;
+		private final double distToEntity;
+
+		private NearbyBlock(Block block, int x, int y, Entity e) {
+			this.block = block;
+			this.x = x;
+			this.y = y;
+			this.distToEntity = Math.sqrt(Math.exp((x + .5) - (e.getX() + e.getWidth() / 2))
+					+ Math.exp((y + .5) - (e.getY() + e.getWidth() / 2)));
+		}
+
+		@Override
+		public int compareTo(NearbyBlock b) {
+			// We want to scale the distance up so that it's more precise, since compareTo
+			// only accepts ints
+			return (int) (b.distToEntity - this.distToEntity) * 10000;
+		}
+	}
 
 	public static void collideBlocks(Map map, Entity entity) {
 
-		relevantBlocks = new ArrayList<Block>();
+		relevantBlocks = new ArrayList<NearbyBlock>();
 
-		for (int x = (int) entity.getX(); x <= (int) (entity.getX() + entity.getWidth()); x++) {
-			for (int y = (int) entity.getY(); y <= (int) (entity.getY() + entity.getHeight()); y++) {
+		// Round down rather than toward zero, so the right columns are checked at negative X too
+		int minX = (int) Math.floor(entity.getX());
+		int maxX = (int) Math.floor(entity.getX() + entity.getWidth());
+		int minY = (int) Math.floor(entity.getY());
+		int maxY = (int) Math.floor(entity.getY() + entity.getHeight());
+		for (int x = minX; x <= maxX; x++) {
+			for (int y = minY; y <= maxY; y++) {
 
 				if (map.getBlock(x, y) != null)
-					relevantBlocks.add(map.getBlock(x, y));
+					relevantBlocks.add(new NearbyBlock(map.getBlock(x, y), x, y, entity));
 
 			}
 		}
 
-		Blocks.sortByDistanceToPlayer(relevantBlocks);
+		Collections.sort(relevantBlocks);
 
 		for (int i=0; i<relevantBlocks.size(); i++) {
 			collideBlock(map, entity, relevantBlocks.get(i));
 		}
 	}
 
-	private static void collideBlock(Map map, Entity entity, Block block) {
+	private static void collideBlock(Map map, Entity entity, NearbyBlock nearby) {
+
+		Block block = nearby.block;
 
-		if (block != null && !block.isFluid() && entity.getBounds().intersects(block.getBounds())) {
+		if (block != null && !block.isFluid() && entity.getBounds().intersects(block.getBounds(nearby.x, nearby.y))) {
 
 			double player_bottom = entity.getY() + entity.getHeight();
-			double tiles_bottom = block.getY() + 1;
+			double tiles_bottom = nearby.y + 1;
 			double player_right = entity.getX() + entity.getWidth();
-			double tiles_right = block.getX() + 1;
+			double tiles_right = nearby.x + 1;
 
 			double b_collision = tiles_bottom - entity.getY();
-			double t_collision = player_bottom - block.getY();
-			double l_collision = player_right - block.getX();
+			double t_collision = player_bottom - nearby.y;
+			double l_collision = player_right - nearby.x;
 			double r_collision = tiles_right - entity.getX();
 
 			if (t_collision < b_collision && t_collision < l_collision && t_collision < r_collision) {
 				// Top collision (of player)
-				entity.setY(block.getY() - entity.getHeight());
+				entity.setY(nearby.y - entity.getHeight());
 				entity.setVelocityY(0);
 			}
 			if (b_collision < t_collision && b_collision < l_collision && b_collision < r_collision) {
 				// Bottom collision (of player)
-				entity.setY(block.getY() + 1);
+				entity.setY(nearby.y + 1);
 				entity.setVelocityY(0);
 			}
 			if (l_collision < r_collision && l_collision < t_collision && l_collision < b_collision) {
 				// Right collision (of player)
-				entity.setX(block.getX() - entity.getWidth());
+				entity.setX(nearby.x - entity.getWidth());
 				entity.setVelocityX(0);
 			}
 			if (r_collision < l_collision && r_collision < t_collision && r_collision < b_collision) {
 				// Left collision (of player)
-				entity.setX(block.getX() + 1);
+				entity.setX(nearby.x + 1);
 				entity.setVelocityX(0);
 			}
 